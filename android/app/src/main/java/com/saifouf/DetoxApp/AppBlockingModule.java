@@ -1,22 +1,61 @@
 package com.saifouf.DetoxApp;
 
 import com.facebook.react.bridge.ReactApplicationContext;
-import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
 import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReadableArray;
-import android.content.Intent;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+import android.app.usage.UsageEvents;
+import android.app.usage.UsageStatsManager;
 import android.content.Context;
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.provider.Settings;
+import android.text.TextUtils;
+import android.util.Base64;
 import android.util.Log;
-import android.content.SharedPreferences;
+import com.saifouf.detox.core.replay.RulesFile;
+import com.saifouf.detox.core.replay.Trace;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicInteger;
 
-public class AppBlockingModule extends ReactContextBaseJavaModule {
+/**
+ * TurboModule for the blocking service (spec: src/specs/NativeAppBlockingModule.ts).
+ * The service runs in the ":blocker" process; live state comes from it through
+ * BlockerClient, with local fallbacks while it is not running.
+ */
+public class AppBlockingModule extends NativeAppBlockingModuleSpec {
     private static final String TAG = "AppBlockingModule";
+    static final String EVENT_FOREGROUND_CHANGED = "AppBlockingForegroundChanged";
+    static final String EVENT_APP_BLOCKED = "AppBlockingAppBlocked";
+
+    // Module of the live React instance; BlockerClient emits service events through it
+    private static volatile AppBlockingModule activeModule;
+    private static final AtomicInteger listenerCount = new AtomicInteger();
+
     private final ReactApplicationContext reactContext;
-    private static final String PREFS_NAME = "DetoxAppPrefs";
-    private static final String KEY_RESTRICTED_APPS = "restricted_apps";
 
     public AppBlockingModule(ReactApplicationContext reactContext) {
         super(reactContext);
@@ -24,15 +63,74 @@ public class AppBlockingModule extends ReactContextBaseJavaModule {
     }
 
     @Override
-    public String getName() {
-        return "AppBlockingModule";
+    public void initialize() {
+        super.initialize();
+        activeModule = this;
+        BlockerClient.get(reactContext).connect();
+    }
+
+    @Override
+    public void invalidate() {
+        if (activeModule == this) {
+            activeModule = null;
+            listenerCount.set(0);
+            BlockerClient.get(reactContext).setListening(false);
+        }
+        super.invalidate();
+    }
+
+    static boolean emitForegroundChanged(String packageName, long timestamp) {
+        WritableMap event = Arguments.createMap();
+        event.putString("packageName", packageName);
+        event.putDouble("timestamp", timestamp);
+        return emit(EVENT_FOREGROUND_CHANGED, event);
+    }
+
+    static boolean emitAppBlocked(String packageName, int rule, long timestamp) {
+        WritableMap event = Arguments.createMap();
+        event.putString("packageName", packageName);
+        event.putString("rule", rule == BlockEventLog.RULE_QUOTA ? "quota" : "schedule");
+        event.putDouble("timestamp", timestamp);
+        return emit(EVENT_APP_BLOCKED, event);
+    }
+
+    private static boolean emit(String eventName, WritableMap params) {
+        AppBlockingModule module = activeModule;
+        if (module == null || listenerCount.get() == 0 || !module.reactContext.hasActiveReactInstance()) {
+            return false;
+        }
+        module.reactContext.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class).emit(eventName, params);
+        return true;
     }
 
     @ReactMethod
+    @Override
+    public void addListener(String eventName) {
+        listenerCount.incrementAndGet();
+        // So the service can skip work nobody reads
+        BlockerClient.get(reactContext).setListening(true);
+    }
+
+    @ReactMethod
+    @Override
+    public void removeListeners(double count) {
+        int removed = (int) count;
+        while (true) {
+            int current = listenerCount.get();
+            int remaining = Math.max(0, current - removed);
+            if (listenerCount.compareAndSet(current, remaining)) {
+                BlockerClient.get(reactContext).setListening(remaining > 0);
+                return;
+            }
+        }
+    }
+
+    @ReactMethod
+    @Override
     public void startAppBlockingService() {
         try {
-            Intent serviceIntent = new Intent(reactContext, AppBlockingService.class);
-            reactContext.startService(serviceIntent);
+            AppBlockingService.setMonitoringEnabled(reactContext, true);
+            AppBlockingService.start(reactContext, AppBlockingService.TRIGGER_APP, SystemClock.elapsedRealtime());
             Log.d(TAG, "App blocking service started");
         } catch (Exception e) {
             Log.e(TAG, "Error starting service: " + e.getMessage());
@@ -40,8 +138,10 @@ public class AppBlockingModule extends ReactContextBaseJavaModule {
     }
 
     @ReactMethod
+    @Override
     public void stopAppBlockingService() {
         try {
+            AppBlockingService.setMonitoringEnabled(reactContext, false);
             Intent serviceIntent = new Intent(reactContext, AppBlockingService.class);
             reactContext.stopService(serviceIntent);
             Log.d(TAG, "App blocking service stopped");
@@ -51,6 +151,7 @@ public class AppBlockingModule extends ReactContextBaseJavaModule {
     }
 
     @ReactMethod
+    @Override
     public void checkUsageStatsPermission(Promise promise) {
         try {
             boolean hasPermission = hasUsageStatsPermission();
@@ -65,10 +166,11 @@ public class AppBlockingModule extends ReactContextBaseJavaModule {
         return true; // Simplified for now
     }
 
+    // Legacy entry point: a flat package list, blocked around the clock
     @ReactMethod
+    @Override
     public void updateRestrictedApps(ReadableArray packageNames, Promise promise) {
         try {
-            SharedPreferences prefs = reactContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
             Set<String> packages = new HashSet<>();
             for (int i = 0; i < packageNames.size(); i++) {
                 String pkg = packageNames.getString(i);
@@ -76,12 +178,427 @@ public class AppBlockingModule extends ReactContextBaseJavaModule {
                     packages.add(pkg);
                 }
             }
-            prefs.edit().putStringSet(KEY_RESTRICTED_APPS, packages).apply();
-            promise.resolve(true);
+            List<RestrictionRule> rules = new ArrayList<>();
+            for (String pkg : packages) {
+                rules.add(RestrictionRule.always(pkg));
+            }
+            long generation = RestrictionStore.publish(reactContext, rules);
+            promise.resolve((double) generation);
             Log.d(TAG, "Updated restricted apps: " + packages.size());
         } catch (Exception e) {
             Log.e(TAG, "Failed to update restricted apps", e);
             promise.reject("UPDATE_FAILED", e);
         }
     }
-}
\ No newline at end of file
+
+    // Full restriction objects keyed by package name, as stored by StorageService.js
+    @ReactMethod
+    @Override
+    public void updateRestrictions(ReadableMap restrictions, Promise promise) {
+        try {
+            List<RestrictionRule> rules = new ArrayList<>();
+            ReadableMapKeySetIterator iterator = restrictions.keySetIterator();
+            while (iterator.hasNextKey()) {
+                String pkg = iterator.nextKey();
+                ReadableMap restriction = restrictions.getMap(pkg);
+                if (pkg.isEmpty() || restriction == null) {
+                    continue;
+                }
+                rules.add(parseRestriction(pkg, restriction));
+            }
+            long generation = RestrictionStore.publish(reactContext, rules);
+            promise.resolve((double) generation);
+            Log.d(TAG, "Updated restrictions: " + rules.size());
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to update restrictions", e);
+            promise.reject("UPDATE_FAILED", e);
+        }
+    }
+
+    // Synchronous over JSI: the snapshot is already in memory
+    @ReactMethod(isBlockingSynchronousMethod = true)
+    @Override
+    public boolean isRestricted(String packageName) {
+        return RestrictionStore.get(reactContext).hasRestriction(packageName);
+    }
+
+    @ReactMethod(isBlockingSynchronousMethod = true)
+    @Override
+    public double getRestrictedCount() {
+        return RestrictionStore.get(reactContext).size();
+    }
+
+    // Deltas against the generation JS last synced; rejects with STALE_VERSION when another
+    // writer got in between, after which JS falls back to a full updateRestrictions
+    @ReactMethod
+    @Override
+    public void addRestrictedApps(ReadableMap restrictions, double baseVersion, Promise promise) {
+        try {
+            List<RestrictionRule> rules = new ArrayList<>();
+            ReadableMapKeySetIterator iterator = restrictions.keySetIterator();
+            while (iterator.hasNextKey()) {
+                String pkg = iterator.nextKey();
+                ReadableMap restriction = restrictions.getMap(pkg);
+                if (pkg.isEmpty() || restriction == null) {
+                    continue;
+                }
+                rules.add(parseRestriction(pkg, restriction));
+            }
+            resolveDelta(RestrictionStore.upsert(reactContext, rules, (long) baseVersion), baseVersion, promise);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to add restricted apps", e);
+            promise.reject("UPDATE_FAILED", e);
+        }
+    }
+
+    @ReactMethod
+    @Override
+    public void removeRestrictedApps(ReadableArray packageNames, double baseVersion, Promise promise) {
+        try {
+            List<String> packages = new ArrayList<>();
+            for (int i = 0; i < packageNames.size(); i++) {
+                String pkg = packageNames.getString(i);
+                if (pkg != null && !pkg.isEmpty()) {
+                    packages.add(pkg);
+                }
+            }
+            resolveDelta(RestrictionStore.remove(reactContext, packages, (long) baseVersion), baseVersion, promise);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to remove restricted apps", e);
+            promise.reject("UPDATE_FAILED", e);
+        }
+    }
+
+    private void resolveDelta(long generation, double baseVersion, Promise promise) {
+        if (generation == RestrictionStore.STALE) {
+            promise.reject("STALE_VERSION", "Base version " + (long) baseVersion + " is not current ("
+                    + RestrictionStore.get(reactContext).getGeneration() + ")");
+        } else {
+            promise.resolve((double) generation);
+        }
+    }
+
+    private RestrictionRule parseRestriction(String pkg, ReadableMap restriction) {
+        boolean enabled = !restriction.hasKey("enabled") || restriction.getBoolean("enabled");
+        boolean[] days = new boolean[RestrictionRule.DAY_KEYS.length];
+        ReadableMap dayMap = restriction.hasKey("days") ? restriction.getMap("days") : null;
+        for (int i = 0; i < days.length; i++) {
+            String key = RestrictionRule.DAY_KEYS[i];
+            days[i] = dayMap != null && dayMap.hasKey(key) && dayMap.getBoolean(key);
+        }
+        int start = RestrictionRule.parseTime(restriction.getString("startTime"));
+        int end = RestrictionRule.parseTime(restriction.getString("endTime"));
+        return new RestrictionRule(pkg, enabled, days, start, end);
+    }
+
+    // Daily foreground budgets: { "com.instagram.android": 30 } means 30 minutes per day.
+    // Replaces the previous set; enforced natively by AppBlockingService.
+    @ReactMethod
+    @Override
+    public void setDailyQuotas(ReadableMap quotaMinutes, Promise promise) {
+        try {
+            Map<String, Long> quotas = new HashMap<>();
+            ReadableMapKeySetIterator iterator = quotaMinutes.keySetIterator();
+            while (iterator.hasNextKey()) {
+                String pkg = iterator.nextKey();
+                double minutes = quotaMinutes.getDouble(pkg);
+                if (!pkg.isEmpty() && minutes >= 0) {
+                    quotas.put(pkg, (long) (minutes * 60 * 1000));
+                }
+            }
+            long generation = RestrictionStore.publishQuotas(reactContext, quotas);
+            promise.resolve((double) generation);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to update daily quotas", e);
+            promise.reject("UPDATE_FAILED", e);
+        }
+    }
+
+    // Foreground milliseconds per package for the current local day. Live from the service;
+    // the last saved totals while it is not running
+    @ReactMethod
+    @Override
+    public void getTodayUsage(final Promise promise) {
+        BlockerClient.get(reactContext).query(BlockerProtocol.QUERY_TODAY_USAGE, new BlockerClient.Callback() {
+            @Override
+            public void onResult(Bundle usage) {
+                try {
+                    WritableMap result = Arguments.createMap();
+                    if (usage != null) {
+                        for (String pkg : usage.keySet()) {
+                            result.putDouble(pkg, usage.getLong(pkg));
+                        }
+                    } else {
+                        Map<String, Long> saved = UsageAccountant.readSaved(reactContext, System.currentTimeMillis());
+                        for (Map.Entry<String, Long> entry : saved.entrySet()) {
+                            result.putDouble(entry.getKey(), entry.getValue());
+                        }
+                    }
+                    promise.resolve(result);
+                } catch (Exception e) {
+                    promise.reject("USAGE_ERROR", e.getMessage());
+                }
+            }
+        });
+    }
+
+    // applied is -1 while the service is not running
+    @ReactMethod
+    @Override
+    public void getRestrictionGeneration(final Promise promise) {
+        BlockerClient.get(reactContext).query(BlockerProtocol.QUERY_STATUS, new BlockerClient.Callback() {
+            @Override
+            public void onResult(Bundle status) {
+                try {
+                    WritableMap result = Arguments.createMap();
+                    result.putDouble("published", RestrictionStore.get(reactContext).getGeneration());
+                    result.putDouble("applied", status != null
+                            ? status.getLong(BlockerProtocol.KEY_APPLIED_GENERATION) : -1);
+                    promise.resolve(result);
+                } catch (Exception e) {
+                    promise.reject("GENERATION_ERROR", e.getMessage());
+                }
+            }
+        });
+    }
+
+    // Block counts per package per local day in [fromMs, toMs), aggregated natively:
+    // { days: [dayStartMs...], counts: { pkg: [countPerDay...] }, total }
+    @ReactMethod
+    @Override
+    public void getBlockStats(double fromMs, double toMs, Promise promise) {
+        try {
+            BlockEventLog.DailyCounts stats = BlockEventLog.get(reactContext).aggregate((long) fromMs, (long) toMs);
+            WritableArray days = Arguments.createArray();
+            for (long day : stats.days) {
+                days.pushDouble(day);
+            }
+            WritableMap counts = Arguments.createMap();
+            for (Map.Entry<String, int[]> entry : stats.counts.entrySet()) {
+                WritableArray row = Arguments.createArray();
+                for (int count : entry.getValue()) {
+                    row.pushInt(count);
+                }
+                counts.putArray(entry.getKey(), row);
+            }
+            WritableMap result = Arguments.createMap();
+            result.putArray("days", days);
+            result.putMap("counts", counts);
+            result.putInt("total", stats.total);
+            promise.resolve(result);
+        } catch (Exception e) {
+            promise.reject("BLOCK_STATS_ERROR", e.getMessage());
+        }
+    }
+
+    // Foreground time per package per hour or day of [fromMs, toMs), read from the rollups the
+    // service keeps (at most a minute behind). Columns are packed rather than nested maps:
+    // { resolution, count, buckets, packageNames (joined by SEPARATOR, most used first),
+    //   bucketStarts (base64 little-endian Float64), values (base64 little-endian Int32 ms,
+    //   row-major [package][bucket]) }
+    @ReactMethod
+    @Override
+    public void getUsageHistory(double fromMs, double toMs, String resolution, Promise promise) {
+        try {
+            boolean hourly = "hour".equals(resolution);
+            UsageHistory.Result history = UsageHistory.query(reactContext, (long) fromMs, (long) toMs, hourly);
+            ByteBuffer starts = ByteBuffer.allocate(history.bucketStarts.length * 8).order(ByteOrder.LITTLE_ENDIAN);
+            for (long start : history.bucketStarts) {
+                starts.putDouble(start);
+            }
+            ByteBuffer values = ByteBuffer.allocate(history.values.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+            values.asIntBuffer().put(history.values);
+            WritableMap result = Arguments.createMap();
+            result.putString("resolution", hourly ? "hour" : "day");
+            result.putInt("count", history.packages.length);
+            result.putInt("buckets", history.bucketStarts.length);
+            result.putString("packageNames", TextUtils.join(String.valueOf(AppListeModule.SEPARATOR), history.packages));
+            result.putString("bucketStarts", Base64.encodeToString(starts.array(), Base64.NO_WRAP));
+            result.putString("values", Base64.encodeToString(values.array(), Base64.NO_WRAP));
+            promise.resolve(result);
+        } catch (Exception e) {
+            promise.reject("USAGE_HISTORY_ERROR", e.getMessage());
+        }
+    }
+
+    // Counters, histograms and resident memory of the blocking service process, the same
+    // data as dumpsys
+    @ReactMethod
+    @Override
+    public void getServiceMetrics(final Promise promise) {
+        BlockerClient.get(reactContext).query(BlockerProtocol.QUERY_METRICS, new BlockerClient.Callback() {
+            @Override
+            public void onResult(Bundle metrics) {
+                try {
+                    promise.resolve(Arguments.fromBundle(metrics != null ? metrics : ServiceMetrics.get().toBundle()));
+                } catch (Exception e) {
+                    promise.reject("METRICS_ERROR", e.getMessage());
+                }
+            }
+        });
+    }
+
+    // Captures the usage events of [fromMs, toMs) and the current rules for offline replay
+    // (./gradlew :detox-core:replay). Resolves { tracePath, rulesPath, events }.
+    @ReactMethod
+    @Override
+    public void exportUsageTrace(double fromMs, double toMs, Promise promise) {
+        try {
+            File dir = new File(reactContext.getFilesDir(), "traces");
+            if (!dir.exists() && !dir.mkdirs()) {
+                throw new IllegalStateException("Unable to create " + dir);
+            }
+            long from = (long) fromMs;
+            File traceFile = new File(dir, "trace-" + from + ".dxt");
+            UsageStatsManager usageStatsManager = (UsageStatsManager) reactContext.getSystemService(Context.USAGE_STATS_SERVICE);
+            UsageEvents events = usageStatsManager.queryEvents(from, (long) toMs);
+            UsageEvents.Event event = new UsageEvents.Event();
+            Trace.Writer writer = new Trace.Writer(new FileOutputStream(traceFile));
+            try {
+                while (events.hasNextEvent()) {
+                    events.getNextEvent(event);
+                    writer.onEvent(event.getPackageName(), event.getEventType(), event.getTimeStamp());
+                }
+            } finally {
+                writer.close();
+            }
+
+            File rulesFile = new File(dir, "rules-" + from + ".txt");
+            RestrictionSnapshot snapshot = RestrictionStore.get(reactContext);
+            PrintWriter rules = new PrintWriter(rulesFile);
+            try {
+                rules.println("# tz=" + TimeZone.getDefault().getID());
+                for (RestrictionRule rule : snapshot.getRules()) {
+                    if (rule.enabled) {
+                        rules.println(rule.toRulesLine());
+                    }
+                }
+                for (Map.Entry<String, Long> quota : snapshot.getDailyQuotas().entrySet()) {
+                    rules.println(RulesFile.formatQuota(quota.getKey(), quota.getValue()));
+                }
+            } finally {
+                rules.close();
+            }
+
+            WritableMap result = Arguments.createMap();
+            result.putString("tracePath", traceFile.getAbsolutePath());
+            result.putString("rulesPath", rulesFile.getAbsolutePath());
+            result.putInt("events", writer.getCount());
+            promise.resolve(result);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to export usage trace: " + e.getMessage());
+            promise.reject("TRACE_ERROR", e.getMessage());
+        }
+    }
+
+    // LEVEL_OFF (0), LEVEL_BASIC (1) or LEVEL_VERBOSE (2); persisted for the next service start
+    @ReactMethod
+    @Override
+    public void setTraceLevel(double level, Promise promise) {
+        try {
+            Tracer.get().setLevel((int) level);
+            reactContext.getSharedPreferences(Tracer.PREFS_NAME, Context.MODE_PRIVATE)
+                    .edit().putInt(Tracer.KEY_LEVEL, Tracer.get().getLevel()).apply();
+            BlockerClient.get(reactContext).setTraceLevel(Tracer.get().getLevel());
+            promise.resolve(Tracer.get().getLevel());
+        } catch (Exception e) {
+            promise.reject("TRACE_ERROR", e.getMessage());
+        }
+    }
+
+    // Recent monitoring history of the service as text, oldest first (also in dumpsys)
+    @ReactMethod
+    @Override
+    public void getTraceDump(final Promise promise) {
+        BlockerClient.get(reactContext).query(BlockerProtocol.QUERY_TRACE_DUMP, new BlockerClient.Callback() {
+            @Override
+            public void onResult(Bundle dump) {
+                try {
+                    String path = dump != null ? dump.getString(BlockerProtocol.KEY_TRACE_PATH) : null;
+                    if (path != null) {
+                        promise.resolve(readText(new File(path)));
+                        return;
+                    }
+                    StringWriter buffer = new StringWriter();
+                    PrintWriter writer = new PrintWriter(buffer);
+                    Tracer.get().dump(writer);
+                    writer.flush();
+                    promise.resolve(buffer.toString());
+                } catch (Exception e) {
+                    promise.reject("TRACE_ERROR", e.getMessage());
+                }
+            }
+        });
+    }
+
+    private static String readText(File file) throws IOException {
+        StringBuilder text = new StringBuilder((int) file.length());
+        InputStreamReader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try {
+            char[] chunk = new char[8192];
+            int read;
+            while ((read = reader.read(chunk)) > 0) {
+                text.append(chunk, 0, read);
+            }
+        } finally {
+            reader.close();
+        }
+        return text.toString();
+    }
+
+    // "auto" (accessibility when enabled, else polling), "usage_events" or "accessibility".
+    // Applied immediately when the service is running
+    @ReactMethod
+    @Override
+    public void setDetectorMode(String mode, Promise promise) {
+        try {
+            ForegroundDetectors.setMode(reactContext, mode);
+            promise.resolve(mode);
+        } catch (Exception e) {
+            promise.reject("DETECTOR_ERROR", e.getMessage());
+        }
+    }
+
+    // { mode, engine: "usage_events" | "accessibility" | null, accessibilityEnabled, accessibilityConnected }
+    @ReactMethod
+    @Override
+    public void getDetectorStatus(final Promise promise) {
+        BlockerClient.get(reactContext).query(BlockerProtocol.QUERY_STATUS, new BlockerClient.Callback() {
+            @Override
+            public void onResult(Bundle status) {
+                try {
+                    WritableMap result = Arguments.createMap();
+                    result.putString("mode", ForegroundDetectors.getMode(reactContext));
+                    int engine = status != null ? status.getInt(BlockerProtocol.KEY_ENGINE, -1) : -1;
+                    if (engine == ForegroundDetectors.ENGINE_ACCESSIBILITY) {
+                        result.putString("engine", ForegroundDetectors.MODE_ACCESSIBILITY);
+                    } else if (engine == ForegroundDetectors.ENGINE_USAGE_EVENTS) {
+                        result.putString("engine", ForegroundDetectors.MODE_USAGE_EVENTS);
+                    } else {
+                        result.putNull("engine");
+                    }
+                    result.putBoolean("accessibilityEnabled", ForegroundDetectors.isAccessibilityEnabled(reactContext));
+                    result.putBoolean("accessibilityConnected", status != null
+                            && status.getBoolean(BlockerProtocol.KEY_ACCESSIBILITY_CONNECTED));
+                    promise.resolve(result);
+                } catch (Exception e) {
+                    promise.reject("DETECTOR_ERROR", e.getMessage());
+                }
+            }
+        });
+    }
+
+    @ReactMethod
+    @Override
+    public void openAccessibilitySettings(Promise promise) {
+        try {
+            Intent intent = new Intent(Settings.ACTION_ACCESSIBILITY_SETTINGS);
+            intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+            reactContext.startActivity(intent);
+            promise.resolve(true);
+        } catch (Exception e) {
+            Log.e(TAG, "Error opening accessibility settings: " + e.getMessage());
+            promise.resolve(false);
+        }
+    }
+}
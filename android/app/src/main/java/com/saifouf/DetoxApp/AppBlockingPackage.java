@@ -1,26 +1,53 @@
 package com.saifouf.DetoxApp;
 
-import com.facebook.react.ReactPackage;
+import com.facebook.react.BaseReactPackage;
 import com.facebook.react.bridge.NativeModule;
 import com.facebook.react.bridge.ReactApplicationContext;
-import com.facebook.react.uimanager.ViewManager;
+import com.facebook.react.module.model.ReactModuleInfo;
+import com.facebook.react.module.model.ReactModuleInfoProvider;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
 
-public class AppBlockingPackage implements ReactPackage {
+/**
+ * Registers the app's TurboModules. Specs live in src/specs and are turned into
+ * the Native*Spec base classes by codegen (codegenConfig in package.json).
+ */
+public class AppBlockingPackage extends BaseReactPackage {
 
     @Override
-    public List<ViewManager> createViewManagers(ReactApplicationContext reactContext) {
-        return Collections.emptyList();
+    public NativeModule getModule(String name, ReactApplicationContext reactContext) {
+        switch (name) {
+            case AppBlockingModule.NAME:
+                return new AppBlockingModule(reactContext);
+            case AppListeModule.NAME:
+                return new AppListeModule(reactContext);
+            case OverlayPermissionModule.NAME:
+                return new OverlayPermissionModule(reactContext);
+            default:
+                return null;
+        }
     }
 
     @Override
-    public List<NativeModule> createNativeModules(ReactApplicationContext reactContext) {
-        List<NativeModule> modules = new ArrayList<>();
-        modules.add(new AppBlockingModule(reactContext));
-        modules.add(new AppListeModule(reactContext)); // Add this line
-        return modules;
+    public ReactModuleInfoProvider getReactModuleInfoProvider() {
+        return new ReactModuleInfoProvider() {
+            @Override
+            public Map<String, ReactModuleInfo> getReactModuleInfos() {
+                Map<String, ReactModuleInfo> infos = new HashMap<>();
+                addTurboModule(infos, AppBlockingModule.NAME, AppBlockingModule.class);
+                addTurboModule(infos, AppListeModule.NAME, AppListeModule.class);
+                addTurboModule(infos, OverlayPermissionModule.NAME, OverlayPermissionModule.class);
+                return infos;
+            }
+        };
     }
-}
\ No newline at end of file
+
+    private static void addTurboModule(Map<String, ReactModuleInfo> infos, String name, Class<?> moduleClass) {
+        infos.put(name, new ReactModuleInfo(name, moduleClass.getName(),
+                false, // canOverrideExistingModule
+                false, // needsEagerInit
+                false, // isCxxModule
+                true)); // isTurboModule
+    }
+}
@@ -3,8 +3,10 @@ package com.saifouf.DetoxApp;
 import android.app.Service;
 import android.content.Intent;
 import android.content.pm.PackageManager;
-import android.os.Handler;
+import android.os.Bundle;
 import android.os.IBinder;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 import android.provider.Settings;
 import android.app.UiModeManager;
@@ -12,31 +14,105 @@ import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.os.Build;
-import android.app.usage.UsageStats;
+import android.os.Handler;
+import android.os.Looper;
 import android.app.usage.UsageStatsManager;
 import android.content.Context;
-import android.content.SharedPreferences;
 import android.widget.Toast;
 import android.content.pm.ServiceInfo;
 import android.app.ActivityManager; // Added import
 import android.app.Activity; // Added import
 
-import java.util.List;
-import java.util.SortedMap;
-import java.util.TreeMap;
+import com.saifouf.detox.core.BlockCooldown;
+import com.saifouf.detox.core.BlockingEngine;
+import com.saifouf.detox.core.Clock;
+import com.saifouf.detox.core.ForegroundTracker;
+import com.saifouf.detox.core.PackageRegistry;
+import com.saifouf.detox.core.RestrictionMatcher;
+import com.saifouf.detox.core.RuleMatcher;
+import com.saifouf.detox.core.TransitionListener;
+import com.saifouf.detox.core.WindowStateDetector;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
 import java.util.Calendar;
 import java.util.Locale;
+import java.util.Map;
 
+/**
+ * Runs in its own ":blocker" process without React Native (MainApplication skips
+ * it there). Rules come from the shared RestrictionFile; the app process talks
+ * to it through BlockerClient / BlockerHost. Only this process writes usage and
+ * block logs, and it never writes shared preferences, which are not coherent
+ * across processes: settings arrive as start extras and messages instead.
+ */
 public class AppBlockingService extends Service {
     private static final String TAG = "AppBlockingService";
+    // What started the service, for the start-up metrics
+    static final String EXTRA_TRIGGER = "trigger";
+    static final String EXTRA_TRIGGER_ELAPSED = "triggerElapsed";
+    // Settings as the starting process sees them
+    static final String EXTRA_TRACE_LEVEL = "traceLevel";
+    static final String EXTRA_DETECTOR_MODE = "detectorMode";
+    static final String TRIGGER_APP = "app";
+    static final String TRIGGER_BOOT = "boot";
+    static final String TRIGGER_PACKAGE_REPLACED = "package_replaced";
+    // Null intent: the system restarted the sticky service after killing the process
+    static final String TRIGGER_STICKY_RESTART = "sticky_restart";
     private static final String PREFS_NAME = "DetoxAppPrefs";
-    private static final String KEY_RESTRICTED_APPS = "restricted_apps";
-    private Handler handler = new Handler();
-    private Runnable runnable;
-    private static final int CHECK_INTERVAL = 1000; // 1 second
-    private String lastBlockedPackage = null;
-    private long lastBlockTimestamp = 0L;
-    private static final long BLOCK_COOLDOWN_MS = 3000;
+    // Set while the user wants monitoring on, so BootReceiver knows whether to restart it
+    private static final String KEY_MONITORING_ENABLED = "monitoring_enabled";
+    private MonitorScheduler scheduler;
+    private static final long BLOCK_COOLDOWN_MS = BlockCooldown.DEFAULT_COOLDOWN_MS;
+    // Longest stretch without a tick while no rule can fire
+    private static final long MAX_SLEEP_MS = ForegroundTracker.MAX_CATCH_UP_MS / 2;
+    private BlockingEngine engine;
+    // Package ids for everything on the scheduler thread: detectors, engine, matcher, cooldown
+    private final PackageRegistry packages = new PackageRegistry();
+    // Detection engines; the active one is swapped into the engine on the scheduler thread
+    private ForegroundTracker usageTracker;
+    private WindowStateDetector windowDetector;
+    private int activeEngine = -1;
+    private long appliedGeneration = -1L;
+    private RestrictionMatcher restrictionMatcher;
+    private AppCategories appCategories;
+    private UsageAccountant usageAccountant;
+    private UsageHistory usageHistory;
+    private BlockEventLog blockEventLog;
+    private EventPublisher eventPublisher;
+    private BlockerHost host;
+    private BlockOverlay blockOverlay;
+    private final ServiceMetrics metrics = ServiceMetrics.get();
+    private final Tracer tracer = Tracer.get();
+    // Scheduler thread only
+    private boolean firstCheckDone = false;
+    private String detectorMode;
+
+    static void start(Context context, String trigger, long triggerElapsed) {
+        Intent intent = new Intent(context, AppBlockingService.class);
+        intent.putExtra(EXTRA_TRIGGER, trigger);
+        intent.putExtra(EXTRA_TRIGGER_ELAPSED, triggerElapsed);
+        intent.putExtra(EXTRA_TRACE_LEVEL, context.getSharedPreferences(Tracer.PREFS_NAME, Context.MODE_PRIVATE)
+                .getInt(Tracer.KEY_LEVEL, Tracer.LEVEL_BASIC));
+        intent.putExtra(EXTRA_DETECTOR_MODE, ForegroundDetectors.getMode(context));
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            context.startForegroundService(intent);
+        } else {
+            context.startService(intent);
+        }
+    }
+
+    static void setMonitoringEnabled(Context context, boolean enabled) {
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit()
+                .putBoolean(KEY_MONITORING_ENABLED, enabled).apply();
+    }
+
+    static boolean isMonitoringEnabled(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .getBoolean(KEY_MONITORING_ENABLED, false);
+    }
 
     @Override
     public void onCreate() {
@@ -46,29 +122,196 @@ public class AppBlockingService extends Service {
         Notification notification = createNotification();
 
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE) {
-            int serviceTypes = ServiceInfo.FOREGROUND_SERVICE_TYPE_DATA_SYNC;
+            // Not dataSync: Android 15 forbids starting that type from BOOT_COMPLETED and caps it at 6 h/day
+            int serviceTypes = ServiceInfo.FOREGROUND_SERVICE_TYPE_SPECIAL_USE;
             startForeground(notificationId, notification, serviceTypes);
         } else {
             startForeground(notificationId, notification);
         }
+        tracer.setLevel(getSharedPreferences(Tracer.PREFS_NAME, MODE_PRIVATE)
+                .getInt(Tracer.KEY_LEVEL, Tracer.LEVEL_BASIC));
+        detectorMode = ForegroundDetectors.getMode(this);
+        // The app process owns the rule file; a process kept alive across a stop may hold old rules
+        RestrictionStore.setReadOnly(true);
+        RestrictionStore.reload(this);
+        usageAccountant = UsageAccountant.get(this);
+        usageHistory = UsageHistory.get(this);
+        blockEventLog = BlockEventLog.get(this);
+        appCategories = new AppCategories(this);
+        // Attached right after start-up so a block only has to flip visibility; deferred so
+        // building the view does not hold up the first check
+        blockOverlay = new BlockOverlay(this);
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                blockOverlay.warmUp();
+            }
+        });
+        scheduler = new MonitorScheduler(this, new MonitorScheduler.Tick() {
+            @Override
+            public boolean run() {
+                return checkForegroundApp();
+            }
+        });
+        host = new BlockerHost(scheduler.getHandler(), new BlockerHost.Delegate() {
+            @Override
+            public void onRulesChanged() {
+                RestrictionStore.reload(AppBlockingService.this);
+                // Apply right away rather than on the next poll, and wake up if the new
+                // rules open a window sooner than the one being slept until
+                scheduler.restart();
+            }
+
+            @Override
+            public void onTraceLevelChanged(int level) {
+                tracer.setLevel(level);
+            }
+
+            @Override
+            public void onDetectorModeChanged(String mode) {
+                detectorMode = mode;
+                selectDetector();
+            }
+
+            @Override
+            public Bundle query(int kind) {
+                return answerQuery(kind);
+            }
+        });
+        eventPublisher = new EventPublisher(scheduler.getHandler(), host);
+        engine = createEngine();
+        ForegroundAccessibilityService.setSink(new ForegroundAccessibilityService.Sink() {
+            @Override
+            public void onWindowStateChanged(final String packageName, final long timestamp) {
+                // Ahead of any queued tick: the window change itself triggers the block
+                scheduler.getHandler().postAtFrontOfQueue(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (activeEngine == ForegroundDetectors.ENGINE_ACCESSIBILITY
+                                && windowDetector.onWindowStateChanged(packageName, timestamp)) {
+                            scheduler.tickNow();
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void onDetectorStateChanged() {
+                scheduler.getHandler().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        selectDetector();
+                    }
+                });
+            }
+        });
+        scheduler.getHandler().post(new Runnable() {
+            @Override
+            public void run() {
+                selectDetector();
+            }
+        });
         Log.d(TAG, "AppBlockingService created");
     }
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
+        tracer.trace(Tracer.LEVEL_BASIC, Tracer.SERVICE_START, null, 0, 0);
+        if (intent == null) {
+            metrics.onStartRequested(TRIGGER_STICKY_RESTART, Process.getStartElapsedRealtime());
+        } else {
+            String trigger = intent.getStringExtra(EXTRA_TRIGGER);
+            metrics.onStartRequested(trigger != null ? trigger : TRIGGER_APP,
+                    intent.getLongExtra(EXTRA_TRIGGER_ELAPSED, Process.getStartElapsedRealtime()));
+            applyStartSettings(intent);
+        }
         startMonitoring();
         return START_STICKY;
     }
 
     @Override
     public void onDestroy() {
+        tracer.trace(Tracer.LEVEL_BASIC, Tracer.SERVICE_STOP, null, 0, 0);
         stopMonitoring();
+        ForegroundAccessibilityService.setSink(null);
+        ForegroundDetectors.setActiveEngine(-1);
+        eventPublisher.release();
+        blockOverlay.release();
+        // Final saves on the scheduler thread, where maybeSave runs
+        scheduler.release(new Runnable() {
+            @Override
+            public void run() {
+                usageAccountant.save(System.currentTimeMillis());
+                usageHistory.save(System.currentTimeMillis());
+                blockEventLog.flush();
+            }
+        });
         super.onDestroy();
     }
 
+    // adb shell dumpsys activity service com.saifouf.DetoxApp/.AppBlockingService
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        metrics.dump(writer);
+        writer.println();
+        tracer.dump(writer);
+    }
+
+    // BlockerClient binds without creating the service, so this only runs while it is started
     @Override
     public IBinder onBind(Intent intent) {
-        return null;
+        return host.getBinder();
+    }
+
+    private void applyStartSettings(Intent intent) {
+        if (intent.hasExtra(EXTRA_TRACE_LEVEL)) {
+            tracer.setLevel(intent.getIntExtra(EXTRA_TRACE_LEVEL, Tracer.LEVEL_BASIC));
+        }
+        final String mode = intent.getStringExtra(EXTRA_DETECTOR_MODE);
+        if (mode != null) {
+            scheduler.getHandler().post(new Runnable() {
+                @Override
+                public void run() {
+                    detectorMode = mode;
+                    selectDetector();
+                }
+            });
+        }
+    }
+
+    // Scheduler thread
+    private Bundle answerQuery(int kind) {
+        Bundle result = new Bundle();
+        switch (kind) {
+            case BlockerProtocol.QUERY_METRICS:
+                return metrics.toBundle();
+            case BlockerProtocol.QUERY_TRACE_DUMP:
+                File dumpFile = new File(getCacheDir(), "trace-dump.txt");
+                try {
+                    PrintWriter writer = new PrintWriter(dumpFile);
+                    try {
+                        tracer.dump(writer);
+                    } finally {
+                        writer.close();
+                    }
+                    result.putString(BlockerProtocol.KEY_TRACE_PATH, dumpFile.getAbsolutePath());
+                } catch (FileNotFoundException e) {
+                    Log.e(TAG, "Failed to write trace dump: " + e.getMessage());
+                }
+                return result;
+            case BlockerProtocol.QUERY_TODAY_USAGE:
+                for (Map.Entry<String, Long> entry : usageAccountant.snapshot(System.currentTimeMillis()).entrySet()) {
+                    result.putLong(entry.getKey(), entry.getValue());
+                }
+                return result;
+            case BlockerProtocol.QUERY_STATUS:
+                result.putLong(BlockerProtocol.KEY_APPLIED_GENERATION, RestrictionStore.getAppliedGeneration());
+                result.putInt(BlockerProtocol.KEY_ENGINE, activeEngine);
+                result.putBoolean(BlockerProtocol.KEY_ACCESSIBILITY_CONNECTED, ForegroundAccessibilityService.isConnected());
+                return result;
+            default:
+                return result;
+        }
     }
 
     private void createNotificationChannel() {
@@ -99,132 +342,222 @@ public class AppBlockingService extends Service {
     }
 
     private void startMonitoring() {
-        runnable = new Runnable() {
-            @Override
-            public void run() {
-                checkForegroundApp();
-                handler.postDelayed(this, CHECK_INTERVAL);
-            }
-        };
-        handler.postDelayed(runnable, CHECK_INTERVAL);
+        scheduler.start();
     }
 
     private void stopMonitoring() {
-        if (handler != null && runnable != null) {
-            handler.removeCallbacks(runnable);
-        }
+        scheduler.stop();
     }
 
-    private void checkForegroundApp() {
+    // Runs on the scheduler thread; returns true when the foreground app changed
+    private boolean checkForegroundApp() {
+        long tickStartNanos = SystemClock.elapsedRealtimeNanos();
+        metrics.onWakeup();
         try {
-            String foregroundApp = getForegroundApp();
-            if (foregroundApp != null) {
-                Log.d(TAG, "Foreground app: " + foregroundApp);
-                if (isRestricted(foregroundApp)) {
-                    blockApp(foregroundApp);
-                }
+            boolean changed = engine.tick();
+            long now = System.currentTimeMillis();
+            usageAccountant.maybeSave(now);
+            usageHistory.maybeSave(now);
+            long nextActivation = RestrictionStore.get(this).getTable().nextActivation(now);
+            if (nextActivation > now) {
+                // No rule can block anything before then. Wake up within the catch-up range
+                // of the usage event cursor so no transition is lost for the usage history
+                scheduler.sleepUntil(Math.min(nextActivation, now + MAX_SLEEP_MS));
             }
+            return changed;
         } catch (Exception e) {
             Log.e(TAG, "Error checking foreground app: " + e.getMessage());
+            return false;
+        } finally {
+            if (!firstCheckDone) {
+                firstCheckDone = true;
+                metrics.onFirstCheck();
+            }
+            long tickMicros = (SystemClock.elapsedRealtimeNanos() - tickStartNanos) / 1000;
+            metrics.tickDuration.record(tickMicros);
+            tracer.trace(Tracer.LEVEL_VERBOSE, Tracer.TICK, null, engine.getDetector().getLastScanned(), tickMicros);
         }
     }
 
-    private String getForegroundApp() {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-            UsageStatsManager usageStatsManager = (UsageStatsManager) getSystemService(Context.USAGE_STATS_SERVICE);
-            long now = System.currentTimeMillis();
+    private BlockingEngine createEngine() {
+        UsageStatsManager usageStatsManager = (UsageStatsManager) getSystemService(Context.USAGE_STATS_SERVICE);
+        usageTracker = new ForegroundTracker(new UsageEventsSource(usageStatsManager), packages);
+        // Today's totals for quotas, and the hourly history for the stats screens
+        TransitionListener transitions = new TransitionListener() {
+            @Override
+            public void onTransition(String packageName, boolean foreground, long timestamp) {
+                usageAccountant.onTransition(packageName, foreground, timestamp);
+                usageHistory.onTransition(packageName, foreground, timestamp);
+            }
 
-            // Preferred: walk UsageEvents to get the latest MOVE_TO_FOREGROUND event
-            try {
-                android.app.usage.UsageEvents events = usageStatsManager.queryEvents(now - 1000 * 60, now);
-                android.app.usage.UsageEvents.Event event = new android.app.usage.UsageEvents.Event();
-                String latestPackage = null;
-                long latestTime = 0L;
-                while (events.hasNextEvent()) {
-                    events.getNextEvent(event);
-                    if (event.getEventType() == android.app.usage.UsageEvents.Event.MOVE_TO_FOREGROUND) {
-                        if (event.getTimeStamp() > latestTime) {
-                            latestTime = event.getTimeStamp();
-                            latestPackage = event.getPackageName();
-                            Log.d(TAG, "Detected foreground app (events): " + latestPackage);
-                        }
-                    }
-                }
-                if (latestPackage != null) {
-                    return latestPackage; // full package name, e.g., com.facebook.katana
-                }
-            } catch (Exception ignored) {
-                // fallback below
+            @Override
+            public void onTrackingLost(long timestamp) {
+                usageAccountant.onTrackingLost(timestamp);
+                usageHistory.onTrackingLost(timestamp);
+            }
+        };
+        usageTracker.setTransitionListener(transitions);
+        windowDetector = new WindowStateDetector(packages);
+        windowDetector.setTransitionListener(transitions);
+        usageTracker.setErrorHandler(new ForegroundTracker.ErrorHandler() {
+            @Override
+            public void onQueryFailed(Exception e) {
+                tracer.trace(Tracer.LEVEL_BASIC, Tracer.QUERY_FAILED, null, 0, 0);
+                Log.e(TAG, "Error querying usage events: " + e.getMessage());
+            }
+        });
+        // Same time base as the overlay's shown callback
+        Clock clock = new Clock() {
+            @Override
+            public long currentTimeMillis() {
+                return System.currentTimeMillis();
             }
 
-            // Fallback: last-time-used stats
-            List<UsageStats> stats = usageStatsManager.queryUsageStats(UsageStatsManager.INTERVAL_DAILY, now - 1000 * 1000, now);
-            if (stats != null) {
-                SortedMap<Long, UsageStats> sortedStats = new TreeMap<>();
-                for (UsageStats usageStats : stats) {
-                    sortedStats.put(usageStats.getLastTimeUsed(), usageStats);
-                }
-                if (!sortedStats.isEmpty()) {
-                    UsageStats top = sortedStats.get(sortedStats.lastKey());
-                    if (top != null) {
-                        return top.getPackageName(); // full package name
+            @Override
+            public long nanoTime() {
+                return SystemClock.elapsedRealtimeNanos();
+            }
+        };
+        RuleMatcher matcher = new RuleMatcher() {
+            @Override
+            public int match(int packageId, long now) {
+                long lookupStartNanos = SystemClock.elapsedRealtimeNanos();
+                int rule = findBlockingRule(packageId, now);
+                metrics.ruleLookup.record((SystemClock.elapsedRealtimeNanos() - lookupStartNanos) / 1000);
+                return rule;
+            }
+        };
+        return new BlockingEngine(packages, usageTracker, matcher, new BlockCooldown(BLOCK_COOLDOWN_MS), clock,
+                new BlockingEngine.Listener() {
+                    @Override
+                    public void onForegroundChanged(String packageName, long now) {
+                        tracer.trace(Tracer.LEVEL_BASIC, Tracer.FOREGROUND, packageName, 0, 0);
+                        eventPublisher.onForegroundChanged(packageName, now);
                     }
-                }
+
+                    @Override
+                    public void onBlock(String packageName, int rule, long now, long detectedAtNanos) {
+                        tracer.trace(Tracer.LEVEL_BASIC, Tracer.BLOCK, packageName, rule, 0);
+                        blockApp(packageName, rule, now, detectedAtNanos);
+                    }
+
+                    @Override
+                    public void onBlockSuppressed(String packageName, int rule, long now) {
+                        metrics.onBlockSuppressed();
+                        tracer.trace(Tracer.LEVEL_BASIC, Tracer.BLOCK_SUPPRESSED, packageName, rule, 0);
+                    }
+                });
+    }
+
+    // Scheduler thread. Accessibility when it is connected and allowed by the mode, else UsageEvents polling
+    private void selectDetector() {
+        int selected = ForegroundDetectors.select(detectorMode, ForegroundAccessibilityService.isConnected());
+        if (selected == activeEngine) {
+            return;
+        }
+        if (selected == ForegroundDetectors.ENGINE_ACCESSIBILITY) {
+            // Continue from what polling last saw until the first window event arrives
+            windowDetector.seed(engine.getForegroundPackage());
+            engine.setDetector(windowDetector);
+        } else {
+            if (activeEngine == ForegroundDetectors.ENGINE_ACCESSIBILITY) {
+                // Transitions up to now were already accounted from window events
+                usageTracker.skipTo(System.currentTimeMillis());
             }
+            engine.setDetector(usageTracker);
         }
-        return null;
+        activeEngine = selected;
+        ForegroundDetectors.setActiveEngine(selected);
+        scheduler.setPushMode(selected == ForegroundDetectors.ENGINE_ACCESSIBILITY);
+        tracer.trace(Tracer.LEVEL_BASIC, Tracer.DETECTOR, null, selected, 0);
     }
 
-    private boolean isRestricted(String packageName) {
-        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        return prefs.getStringSet(KEY_RESTRICTED_APPS, new java.util.HashSet<>()).contains(packageName);
+    // Returns the RuleMatcher.RULE_* that restricts the package right now
+    private int findBlockingRule(int packageId, long now) {
+        RestrictionSnapshot snapshot = RestrictionStore.get(this);
+        if (snapshot.getGeneration() != appliedGeneration || restrictionMatcher == null) {
+            appliedGeneration = snapshot.getGeneration();
+            // A fresh matcher also drops the per-package schedules memoized for the old rules
+            restrictionMatcher = new RestrictionMatcher(snapshot.getTable(), usageAccountant, packages, appCategories);
+            RestrictionStore.markApplied(appliedGeneration);
+            tracer.trace(Tracer.LEVEL_BASIC, Tracer.RULES_APPLIED, null, appliedGeneration, 0);
+        }
+        int rule = restrictionMatcher.match(packageId, now);
+        if (rule == RuleMatcher.RULE_NONE) {
+            long remaining = restrictionMatcher.remainingQuotaMs(packageId, now);
+            if (remaining > 0) {
+                // Make sure the next tick lands when the budget runs out, not up to a backoff later
+                scheduler.capNextInterval(remaining);
+            }
+        }
+        return rule;
     }
 
-    private void blockApp(String packageName) {
+    // Called by the engine once the cooldown allows blocking the package
+    private void blockApp(final String packageName, final int rule, final long now, final long detectedAtNanos) {
         try {
-            long now = System.currentTimeMillis();
-            if (packageName.equals(lastBlockedPackage) && (now - lastBlockTimestamp) < BLOCK_COOLDOWN_MS) {
-                return;
-            }
-            lastBlockedPackage = packageName;
-            lastBlockTimestamp = now;
+            // 1) Cover the app with the pre-attached overlay; no activity launch on this path
+            boolean overlayShown = blockOverlay.show(packageName, rule, new BlockOverlay.ShownCallback() {
+                @Override
+                public void onShown(long shownAtNanos) {
+                    recordBlock(packageName, now, shownAtNanos - detectedAtNanos, rule, true);
+                }
 
-            // 1) Send restricted app to background (simulate pressing Home)
+                @Override
+                public void onAttachFailed() {
+                    showBlockerActivity(packageName, rule, now, detectedAtNanos);
+                }
+            });
+
+            // 2) Send restricted app to background underneath (simulate pressing Home)
             Intent homeIntent = new Intent(Intent.ACTION_MAIN);
             homeIntent.addCategory(Intent.CATEGORY_HOME);
             homeIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
             startActivity(homeIntent);
 
-            // 2) Kill the background processes of the blocked app
+            // 3) Kill the background processes of the blocked app
             // This helps prevent the app from quickly restarting
             try {
                 ActivityManager am = (ActivityManager) getSystemService(Context.ACTIVITY_SERVICE);
                 am.killBackgroundProcesses(packageName);
-                Log.d(TAG, "Killed background processes for: " + packageName);
             } catch (SecurityException e) {
+                tracer.trace(Tracer.LEVEL_BASIC, Tracer.KILL_FAILED, packageName, 0, 0);
                 Log.e(TAG, "No permission to kill background processes: " + e.getMessage());
                 // Note: You need the KILL_BACKGROUND_PROCESSES permission in your manifest
                 // <uses-permission android:name="android.permission.KILL_BACKGROUND_PROCESSES" />
             }
 
-            // 3) Launch our main app (Restricto) to foreground
-            Intent launchIntent = getPackageManager().getLaunchIntentForPackage("com.saifouf.DetoxApp");
-            if (launchIntent != null) {
-                launchIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
-                startActivity(launchIntent);
+            if (!overlayShown) {
+                // 4) No overlay permission: fall back to the blocker screen inside our app
+                showBlockerActivity(packageName, rule, now, detectedAtNanos);
             }
+            eventPublisher.onBlocked(packageName, rule, now);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to block app " + packageName + ": " + e.getMessage());
+        }
+    }
 
-            // 4) Optionally show blocker screen inside our app
+    // Blocker screen inside our app, for when the overlay is not allowed or failed to attach
+    private void showBlockerActivity(String packageName, int rule, long now, long detectedAtNanos) {
+        try {
             Intent blockerIntent = new Intent(this, BlockerActivity.class);
             blockerIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_SINGLE_TOP);
             blockerIntent.putExtra("blockedPackage", packageName);
             startActivity(blockerIntent);
+            recordBlock(packageName, now, SystemClock.elapsedRealtimeNanos() - detectedAtNanos, rule, false);
 
-            // 5) Feedback toast
+            // Feedback toast
             Toast.makeText(this, "Access blocked. Opening Restricto instead...", Toast.LENGTH_LONG).show();
-            Log.d(TAG, "Blocked & redirected from: " + packageName);
         } catch (Exception e) {
-            Log.e(TAG, "Failed to block app " + packageName + ": " + e.getMessage());
+            Log.e(TAG, "Failed to open blocker screen for " + packageName + ": " + e.getMessage());
         }
     }
+
+    private void recordBlock(String packageName, long timestamp, long latencyNanos, int rule, boolean overlay) {
+        long latencyMicros = latencyNanos / 1000;
+        tracer.trace(Tracer.LEVEL_BASIC, Tracer.BLOCK_SHOWN, packageName, latencyMicros, overlay ? 1 : 0);
+        metrics.onBlocked();
+        metrics.blockLatency.record(latencyMicros);
+        blockEventLog.append(packageName, timestamp, (int) Math.min(latencyMicros, Integer.MAX_VALUE), rule);
+    }
 }
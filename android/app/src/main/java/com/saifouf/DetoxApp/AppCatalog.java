@@ -0,0 +1,347 @@
+package com.saifouf.DetoxApp;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.Uri;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * In-memory catalog of installed non-system apps. Built once through
+ * AppListLoader, then kept current by package broadcasts. Every change bumps a
+ * token so callers can fetch only what changed since their last sync.
+ */
+public class AppCatalog {
+    private static final String TAG = "AppCatalog";
+    // Older changes are dropped; callers behind that point get a full reset
+    private static final int MAX_CHANGE_LOG = 512;
+    private static final int BUILD_PAGE_SIZE = 64;
+    private static final int DEFAULT_ICON_SIZE_DP = 48;
+
+    public static class Delta {
+        public final long token;
+        // True when the caller must discard its copy and take upserts as the full list
+        public final boolean reset;
+        public final List<AppListLoader.AppEntry> upserts;
+        public final List<String> removed;
+
+        Delta(long token, boolean reset, List<AppListLoader.AppEntry> upserts, List<String> removed) {
+            this.token = token;
+            this.reset = reset;
+            this.upserts = upserts;
+            this.removed = removed;
+        }
+    }
+
+    public interface DeltaCallback {
+        void onDelta(Delta delta);
+
+        void onError(Exception e);
+    }
+
+    private static AppCatalog instance;
+
+    private final Context context;
+    private final AppListLoader loader;
+    // Builds and incremental updates are serialized here
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    // Guarded by this
+    private final Map<String, AppListLoader.AppEntry> entries = new LinkedHashMap<>();
+    private final List<String> changeLog = new ArrayList<>();
+    private long token = 0L;
+    // Token of the oldest change still in changeLog, minus one
+    private long logBaseToken = 0L;
+    private boolean built = false;
+    private int iconSizePx = 0;
+
+    // Prefetch timing, elapsedRealtime based; -1 until the step happened
+    private volatile long prefetchStartDelayMs = -1L;
+    private volatile long prefetchDurationMs = -1L;
+    private volatile int prefetchAppCount = -1;
+
+    private final BroadcastReceiver packageReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            Uri data = intent.getData();
+            if (data == null) {
+                return;
+            }
+            final String packageName = data.getSchemeSpecificPart();
+            final boolean removed = Intent.ACTION_PACKAGE_REMOVED.equals(intent.getAction())
+                    && !intent.getBooleanExtra(Intent.EXTRA_REPLACING, false);
+            if (Intent.ACTION_PACKAGE_REMOVED.equals(intent.getAction()) && !removed) {
+                // The matching PACKAGE_REPLACED carries the update
+                return;
+            }
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (removed) {
+                        onPackageRemoved(packageName);
+                    } else {
+                        onPackageChanged(packageName);
+                    }
+                }
+            });
+        }
+    };
+
+    public static synchronized AppCatalog get(Context context) {
+        if (instance == null) {
+            instance = new AppCatalog(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private AppCatalog(Context context) {
+        this.context = context;
+        this.loader = new AppListLoader(context);
+
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addDataScheme("package");
+        context.registerReceiver(packageReceiver, filter);
+    }
+
+    // Icon size used by the app list, shared so a prefetched catalog matches what JS asks for
+    public static int defaultIconSizePx(Context context) {
+        float density = context.getResources().getDisplayMetrics().density;
+        return Math.round(DEFAULT_ICON_SIZE_DP * density);
+    }
+
+    // Builds the catalog (labels, launchability, icon cache) at background priority
+    public void prefetch() {
+        final long queuedAt = SystemClock.elapsedRealtime();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                int previousPriority = Process.getThreadPriority(Process.myTid());
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                try {
+                    long start = SystemClock.elapsedRealtime();
+                    prefetchStartDelayMs = start - Process.getStartElapsedRealtime();
+                    int iconSize = defaultIconSizePx(context);
+                    if (!isBuiltFor(iconSize)) {
+                        build(iconSize, false, BUILD_PAGE_SIZE, null);
+                    }
+                    prefetchDurationMs = SystemClock.elapsedRealtime() - start;
+                    prefetchAppCount = size();
+                    Log.d(TAG, "Catalog prefetched in " + prefetchDurationMs + " ms ("
+                            + (start - queuedAt) + " ms queued)");
+                } catch (Exception e) {
+                    Log.e(TAG, "Catalog prefetch failed: " + e.getMessage());
+                } finally {
+                    Process.setThreadPriority(previousPriority);
+                }
+            }
+        });
+    }
+
+    public long getPrefetchStartDelayMs() {
+        return prefetchStartDelayMs;
+    }
+
+    public long getPrefetchDurationMs() {
+        return prefetchDurationMs;
+    }
+
+    public int getPrefetchAppCount() {
+        return prefetchAppCount;
+    }
+
+    // Serves pages from memory once built; otherwise builds the catalog while streaming pages
+    public void load(final boolean launchableOnly, final int pageSize, final int iconSizePx,
+                     final AppListLoader.PageListener listener) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (!isBuiltFor(iconSizePx)) {
+                        build(iconSizePx, launchableOnly, pageSize, listener);
+                        return;
+                    }
+                    List<AppListLoader.AppEntry> snapshot = snapshot(launchableOnly);
+                    int offset = 0;
+                    while (offset < snapshot.size()) {
+                        int end = Math.min(snapshot.size(), offset + pageSize);
+                        listener.onPage(new ArrayList<>(snapshot.subList(offset, end)), offset);
+                        offset = end;
+                    }
+                    listener.onComplete(snapshot.size());
+                } catch (Exception e) {
+                    Log.e(TAG, "Error loading catalog: " + e.getMessage());
+                    listener.onError(e);
+                }
+            }
+        });
+    }
+
+    public void getChangesSince(final long sinceToken, final int iconSizePx, final DeltaCallback callback) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (!isBuiltFor(iconSizePx)) {
+                        build(iconSizePx, false, BUILD_PAGE_SIZE, null);
+                    }
+                    callback.onDelta(changesSince(sinceToken));
+                } catch (Exception e) {
+                    Log.e(TAG, "Error computing catalog delta: " + e.getMessage());
+                    callback.onError(e);
+                }
+            }
+        });
+    }
+
+    private synchronized boolean isBuiltFor(int iconSizePx) {
+        return built && this.iconSizePx == iconSizePx;
+    }
+
+    // Runs on the executor
+    private void build(int iconSizePx, final boolean launchableOnly, int pageSize,
+                       final AppListLoader.PageListener listener) throws Exception {
+        final List<AppListLoader.AppEntry> all = new ArrayList<>();
+        loader.loadSync(false, pageSize, iconSizePx, new AppListLoader.PageListener() {
+            private int forwarded = 0;
+
+            @Override
+            public void onPage(List<AppListLoader.AppEntry> page, int offset) {
+                all.addAll(page);
+                if (listener == null) {
+                    return;
+                }
+                List<AppListLoader.AppEntry> filtered = filter(page, launchableOnly);
+                if (!filtered.isEmpty()) {
+                    listener.onPage(filtered, forwarded);
+                    forwarded += filtered.size();
+                }
+            }
+
+            @Override
+            public void onComplete(int total) {
+                if (listener != null) {
+                    listener.onComplete(forwarded);
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                if (listener != null) {
+                    listener.onError(e);
+                }
+            }
+        });
+
+        synchronized (this) {
+            entries.clear();
+            for (AppListLoader.AppEntry entry : all) {
+                entries.put(entry.packageName, entry);
+            }
+            this.iconSizePx = iconSizePx;
+            built = true;
+            // A rebuild invalidates every outstanding token
+            token++;
+            changeLog.clear();
+            logBaseToken = token;
+        }
+        Log.d(TAG, "Catalog built: " + all.size() + " apps");
+    }
+
+    private synchronized List<AppListLoader.AppEntry> snapshot(boolean launchableOnly) {
+        return filter(entries.values(), launchableOnly);
+    }
+
+    private synchronized Delta changesSince(long sinceToken) {
+        if (sinceToken <= 0 || sinceToken < logBaseToken || sinceToken > token) {
+            return new Delta(token, true, new ArrayList<>(entries.values()), new ArrayList<String>());
+        }
+        Set<String> changed = new LinkedHashSet<>();
+        for (int i = (int) (sinceToken - logBaseToken); i < changeLog.size(); i++) {
+            changed.add(changeLog.get(i));
+        }
+        List<AppListLoader.AppEntry> upserts = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        for (String packageName : changed) {
+            AppListLoader.AppEntry entry = entries.get(packageName);
+            if (entry != null) {
+                upserts.add(entry);
+            } else {
+                removed.add(packageName);
+            }
+        }
+        return new Delta(token, false, upserts, removed);
+    }
+
+    // Runs on the executor
+    private void onPackageChanged(String packageName) {
+        if (!isBuilt()) {
+            return;
+        }
+        AppListLoader.AppEntry entry = loader.resolvePackage(packageName, iconSizePx);
+        synchronized (this) {
+            if (entry != null) {
+                entries.put(packageName, entry);
+            } else {
+                entries.remove(packageName);
+            }
+            recordChange(packageName);
+        }
+    }
+
+    // Runs on the executor
+    private void onPackageRemoved(String packageName) {
+        IconCache.get(context).remove(packageName);
+        RestrictionStore.removePackage(context, packageName);
+        synchronized (this) {
+            if (built) {
+                entries.remove(packageName);
+                recordChange(packageName);
+            }
+        }
+        Log.d(TAG, "Package removed: " + packageName);
+    }
+
+    private synchronized boolean isBuilt() {
+        return built;
+    }
+
+    private synchronized int size() {
+        return entries.size();
+    }
+
+    // Called with the lock held
+    private void recordChange(String packageName) {
+        changeLog.add(packageName);
+        token++;
+        if (changeLog.size() > MAX_CHANGE_LOG) {
+            int drop = changeLog.size() - MAX_CHANGE_LOG;
+            changeLog.subList(0, drop).clear();
+            logBaseToken += drop;
+        }
+    }
+
+    private static List<AppListLoader.AppEntry> filter(Iterable<AppListLoader.AppEntry> source, boolean launchableOnly) {
+        List<AppListLoader.AppEntry> result = new ArrayList<>();
+        for (AppListLoader.AppEntry entry : source) {
+            if (!launchableOnly || entry.launchable) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+}
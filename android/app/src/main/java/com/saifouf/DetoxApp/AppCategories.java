@@ -0,0 +1,35 @@
+package com.saifouf.DetoxApp;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.os.Build;
+
+import com.saifouf.detox.core.PackageCategories;
+import com.saifouf.detox.core.RuleTable;
+
+/**
+ * ApplicationInfo.category for category rules. Only asked once per package and
+ * rules generation (RestrictionMatcher memoizes the result), and only when a
+ * category rule exists.
+ */
+public class AppCategories implements PackageCategories {
+    private final PackageManager packageManager;
+
+    public AppCategories(Context context) {
+        packageManager = context.getPackageManager();
+    }
+
+    @Override
+    public int categoryOf(String packageName) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
+            return RuleTable.CATEGORY_UNKNOWN;
+        }
+        try {
+            ApplicationInfo info = packageManager.getApplicationInfo(packageName, 0);
+            return info.category;
+        } catch (PackageManager.NameNotFoundException e) {
+            return RuleTable.CATEGORY_UNKNOWN;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.saifouf.DetoxApp;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Single pipeline behind every installed-app listing. Per-app work (label,
+ * launchability, cached icon) runs in parallel on a bounded pool, and results are
+ * handed out in pages, in PackageManager order, as soon as each page is ready.
+ */
+public class AppListLoader {
+    private static final String TAG = "AppListLoader";
+    private static final int POOL_SIZE = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    public static class AppEntry {
+        public final String name;
+        public final String packageName;
+        // file:// URI into IconCache, null when the icon could not be rendered
+        public final String iconUri;
+        public final boolean launchable;
+
+        AppEntry(String name, String packageName, String iconUri, boolean launchable) {
+            this.name = name;
+            this.packageName = packageName;
+            this.iconUri = iconUri;
+            this.launchable = launchable;
+        }
+    }
+
+    public interface PageListener {
+        void onPage(List<AppEntry> page, int offset);
+
+        void onComplete(int total);
+
+        void onError(Exception e);
+    }
+
+    private static final ExecutorService workers = Executors.newFixedThreadPool(POOL_SIZE, newThreadFactory("AppListWorker"));
+    // Collects results in order; kept off the worker pool so it never starves it
+    private static final ExecutorService coordinator = Executors.newSingleThreadExecutor(newThreadFactory("AppListCoordinator"));
+
+    private final Context context;
+    private final IconCache iconCache;
+
+    public AppListLoader(Context context) {
+        this.context = context.getApplicationContext();
+        this.iconCache = IconCache.get(context);
+    }
+
+    public void load(final boolean launchableOnly, final int pageSize, final int iconSizePx, final PageListener listener) {
+        coordinator.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    loadSync(launchableOnly, Math.max(1, pageSize), iconSizePx, listener);
+                } catch (Exception e) {
+                    Log.e(TAG, "Error loading apps: " + e.getMessage());
+                    listener.onError(e);
+                }
+            }
+        });
+    }
+
+    // Blocking variant of load(), for callers that already run on their own thread
+    public void loadSync(final boolean launchableOnly, int pageSize, final int iconSizePx,
+                         PageListener listener) throws Exception {
+        final PackageManager packageManager = context.getPackageManager();
+        // Flag 0: no meta-data bundles; PackageInfo carries the version fields the icon cache keys on
+        List<PackageInfo> packages = packageManager.getInstalledPackages(0);
+
+        List<Future<AppEntry>> futures = new ArrayList<>(packages.size());
+        for (final PackageInfo packageInfo : packages) {
+            ApplicationInfo appInfo = packageInfo.applicationInfo;
+            if (appInfo == null || (appInfo.flags & ApplicationInfo.FLAG_SYSTEM) != 0) {
+                continue;
+            }
+            futures.add(workers.submit(new Callable<AppEntry>() {
+                @Override
+                public AppEntry call() {
+                    return resolve(packageManager, packageInfo, launchableOnly, iconSizePx);
+                }
+            }));
+        }
+
+        List<AppEntry> page = new ArrayList<>(pageSize);
+        int offset = 0;
+        for (Future<AppEntry> future : futures) {
+            AppEntry entry = future.get();
+            if (entry == null) {
+                continue;
+            }
+            page.add(entry);
+            if (page.size() == pageSize) {
+                listener.onPage(page, offset);
+                offset += page.size();
+                page = new ArrayList<>(pageSize);
+            }
+        }
+        if (!page.isEmpty()) {
+            listener.onPage(page, offset);
+            offset += page.size();
+        }
+        listener.onComplete(offset);
+    }
+
+    // Resolves a single package; null when it is not installed or is a system app
+    public AppEntry resolvePackage(String packageName, int iconSizePx) {
+        PackageManager packageManager = context.getPackageManager();
+        try {
+            PackageInfo packageInfo = packageManager.getPackageInfo(packageName, 0);
+            ApplicationInfo appInfo = packageInfo.applicationInfo;
+            if (appInfo == null || (appInfo.flags & ApplicationInfo.FLAG_SYSTEM) != 0) {
+                return null;
+            }
+            return resolve(packageManager, packageInfo, false, iconSizePx);
+        } catch (PackageManager.NameNotFoundException e) {
+            return null;
+        }
+    }
+
+    private AppEntry resolve(PackageManager packageManager, PackageInfo packageInfo, boolean launchableOnly, int iconSizePx) {
+        boolean launchable = packageManager.getLaunchIntentForPackage(packageInfo.packageName) != null;
+        if (launchableOnly && !launchable) {
+            return null;
+        }
+        String name = packageManager.getApplicationLabel(packageInfo.applicationInfo).toString();
+        String iconUri = iconCache.getIconUri(packageManager, packageInfo, iconSizePx);
+        return new AppEntry(name, packageInfo.packageName, iconUri, launchable);
+    }
+
+    private static ThreadFactory newThreadFactory(final String name) {
+        return new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
@@ -1,146 +1,211 @@
 package com.saifouf.DetoxApp;
 
 import com.facebook.react.bridge.ReactApplicationContext;
-import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
 import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.bridge.Arguments;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
 
-import android.content.pm.PackageManager;
-import android.content.pm.ApplicationInfo;
-import android.content.pm.PackageInfo;
-import android.graphics.drawable.Drawable;
-import android.util.Base64;
-import android.graphics.Bitmap;
-import android.graphics.Canvas;
-import android.graphics.PixelFormat;
-import android.graphics.drawable.BitmapDrawable;
-
-import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
 import java.util.List;
 
-public class AppListeModule extends ReactContextBaseJavaModule {
+/**
+ * TurboModule for the installed-app catalog (spec: src/specs/NativeAppListeModule.ts).
+ * Full lists and deltas cross as columns (see toColumns) rather than a map per app.
+ */
+public class AppListeModule extends NativeAppListeModuleSpec {
+    // Joins column values: a control character, not valid in package names and not used in labels
+    static final char SEPARATOR = '\u001f';
+    private static final String EVENT_APP_PAGE = "AppListePage";
+    private static final int DEFAULT_PAGE_SIZE = 20;
     private final ReactApplicationContext reactContext;
+    private final AppCatalog appCatalog;
 
     public AppListeModule(ReactApplicationContext reactContext) {
         super(reactContext);
         this.reactContext = reactContext;
+        this.appCatalog = AppCatalog.get(reactContext);
     }
 
+    @ReactMethod
     @Override
-    public String getName() {
-        return "AppListeModule";
+    public void getInstalledApps(Promise promise) {
+        collectApps(false, promise);
     }
 
     @ReactMethod
-    public void getInstalledApps(Promise promise) {
-        try {
-            PackageManager packageManager = reactContext.getPackageManager();
-            List<ApplicationInfo> apps = packageManager.getInstalledApplications(PackageManager.GET_META_DATA);
-            
-            WritableArray appList = Arguments.createArray();
-            
-            for (ApplicationInfo appInfo : apps) {
-                // Skip system apps if you want, or include them
-                if ((appInfo.flags & ApplicationInfo.FLAG_SYSTEM) == 0) {
-                    WritableMap appMap = Arguments.createMap();
-                    
-                    String appName = packageManager.getApplicationLabel(appInfo).toString();
-                    String packageName = appInfo.packageName;
-                    
-                    appMap.putString("name", appName);
-                    appMap.putString("packageName", packageName);
-                    
-                    // Get app icon and convert to base64
-                    try {
-                        Drawable icon = packageManager.getApplicationIcon(appInfo);
-                        String iconBase64 = drawableToBase64(icon);
-                        appMap.putString("icon", iconBase64);
-                    } catch (Exception e) {
-                        appMap.putString("icon", null);
-                    }
-                    
-                    appList.pushMap(appMap);
-                }
+    @Override
+    public void getNonSystemApps(Promise promise) {
+        collectApps(true, promise);
+    }
+
+    // Streams pages as "AppListePage" events: { requestId, offset, apps } then { requestId, done, total }.
+    // iconSizePx <= 0 uses the default list icon size.
+    @ReactMethod
+    @Override
+    public void streamApps(final String requestId, boolean launchableOnly, double pageSize, double iconSizePx) {
+        appCatalog.load(launchableOnly, pageSize > 0 ? (int) pageSize : DEFAULT_PAGE_SIZE,
+                iconSizePx > 0 ? (int) iconSizePx : defaultIconSizePx(), new AppListLoader.PageListener() {
+            @Override
+            public void onPage(List<AppListLoader.AppEntry> page, int offset) {
+                WritableMap event = Arguments.createMap();
+                event.putString("requestId", requestId);
+                event.putInt("offset", offset);
+                event.putArray("apps", toWritableArray(page));
+                event.putBoolean("done", false);
+                emit(EVENT_APP_PAGE, event);
             }
-            
-            promise.resolve(appList);
-        } catch (Exception e) {
-            promise.reject("GET_APPS_ERROR", e.getMessage());
-        }
+
+            @Override
+            public void onComplete(int total) {
+                WritableMap event = Arguments.createMap();
+                event.putString("requestId", requestId);
+                event.putInt("total", total);
+                event.putBoolean("done", true);
+                emit(EVENT_APP_PAGE, event);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                WritableMap event = Arguments.createMap();
+                event.putString("requestId", requestId);
+                event.putBoolean("done", true);
+                event.putString("error", e.getMessage());
+                emit(EVENT_APP_PAGE, event);
+            }
+        });
     }
 
+    // Resolves { token, reset, apps, removed } with apps as columns and removed packages joined by
+    // SEPARATOR. Pass 0 for a full list; afterwards pass the returned token to receive only apps
+    // installed, updated or removed since then.
     @ReactMethod
-    public void getNonSystemApps(Promise promise) {
-        try {
-            PackageManager packageManager = reactContext.getPackageManager();
-            List<ApplicationInfo> apps = packageManager.getInstalledApplications(PackageManager.GET_META_DATA);
-            
-            WritableArray appList = Arguments.createArray();
-            
-            for (ApplicationInfo appInfo : apps) {
-                // Only include non-system apps and apps that can be launched
-                if ((appInfo.flags & ApplicationInfo.FLAG_SYSTEM) == 0 && 
-                    packageManager.getLaunchIntentForPackage(appInfo.packageName) != null) {
-                    
-                    WritableMap appMap = Arguments.createMap();
-                    
-                    String appName = packageManager.getApplicationLabel(appInfo).toString();
-                    String packageName = appInfo.packageName;
-                    
-                    appMap.putString("name", appName);
-                    appMap.putString("packageName", packageName);
-                    
-                    // Get app icon
-                    try {
-                        Drawable icon = packageManager.getApplicationIcon(appInfo);
-                        String iconBase64 = drawableToBase64(icon);
-                        appMap.putString("icon", iconBase64);
-                    } catch (Exception e) {
-                        appMap.putString("icon", null);
+    @Override
+    public void getAppsChangedSince(double token, final Promise promise) {
+        appCatalog.getChangesSince((long) token, defaultIconSizePx(), new AppCatalog.DeltaCallback() {
+            @Override
+            public void onDelta(AppCatalog.Delta delta) {
+                WritableMap result = Arguments.createMap();
+                result.putDouble("token", delta.token);
+                result.putBoolean("reset", delta.reset);
+                result.putMap("apps", toColumns(delta.upserts));
+                StringBuilder removed = new StringBuilder();
+                for (String packageName : delta.removed) {
+                    if (removed.length() > 0) {
+                        removed.append(SEPARATOR);
                     }
-                    
-                    appList.pushMap(appMap);
+                    removed.append(packageName);
                 }
+                result.putString("removed", removed.toString());
+                promise.resolve(result);
             }
-            
-            promise.resolve(appList);
-        } catch (Exception e) {
-            promise.reject("GET_APPS_ERROR", e.getMessage());
-        }
+
+            @Override
+            public void onError(Exception e) {
+                promise.reject("GET_APPS_ERROR", e.getMessage());
+            }
+        });
     }
 
-    private String drawableToBase64(Drawable drawable) {
-        try {
-            Bitmap bitmap;
-            
-            if (drawable instanceof BitmapDrawable) {
-                bitmap = ((BitmapDrawable) drawable).getBitmap();
-            } else {
-                // For other types of drawable, convert to bitmap
-                if (drawable.getIntrinsicWidth() <= 0 || drawable.getIntrinsicHeight() <= 0) {
-                    bitmap = Bitmap.createBitmap(1, 1, Bitmap.Config.ARGB_8888);
-                } else {
-                    bitmap = Bitmap.createBitmap(drawable.getIntrinsicWidth(), 
-                                                drawable.getIntrinsicHeight(), 
-                                                Bitmap.Config.ARGB_8888);
-                }
-                
-                Canvas canvas = new Canvas(bitmap);
-                drawable.setBounds(0, 0, canvas.getWidth(), canvas.getHeight());
-                drawable.draw(canvas);
+    // Timing of the startup prefetch started by MainApplication; -1 for steps that did not run
+    @ReactMethod
+    @Override
+    public void getCatalogPrefetchTiming(Promise promise) {
+        WritableMap result = Arguments.createMap();
+        result.putBoolean("enabled", BuildConfig.PREFETCH_APP_CATALOG);
+        result.putDouble("startDelayMs", appCatalog.getPrefetchStartDelayMs());
+        result.putDouble("durationMs", appCatalog.getPrefetchDurationMs());
+        result.putInt("appCount", appCatalog.getPrefetchAppCount());
+        promise.resolve(result);
+    }
+
+    // Required by NativeEventEmitter
+    @ReactMethod
+    @Override
+    public void addListener(String eventName) {
+    }
+
+    @ReactMethod
+    @Override
+    public void removeListeners(double count) {
+    }
+
+    private void collectApps(boolean launchableOnly, final Promise promise) {
+        final List<AppListLoader.AppEntry> apps = new ArrayList<>();
+        appCatalog.load(launchableOnly, DEFAULT_PAGE_SIZE, defaultIconSizePx(), new AppListLoader.PageListener() {
+            @Override
+            public void onPage(List<AppListLoader.AppEntry> page, int offset) {
+                apps.addAll(page);
+            }
+
+            @Override
+            public void onComplete(int total) {
+                promise.resolve(toColumns(apps));
             }
-            
-            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-            bitmap.compress(Bitmap.CompressFormat.PNG, 100, byteArrayOutputStream);
-            byte[] byteArray = byteArrayOutputStream.toByteArray();
-            return Base64.encodeToString(byteArray, Base64.DEFAULT);
-            
-        } catch (Exception e) {
-            return null;
+
+            @Override
+            public void onError(Exception e) {
+                promise.reject("GET_APPS_ERROR", e.getMessage());
+            }
+        });
+    }
+
+    // { count, packageNames, names, iconUris, launchable }: one string per field, values joined by
+    // SEPARATOR (a missing icon is empty), launchable as one '0'/'1' per app. Five JS strings
+    // instead of a map with four fields per app.
+    private WritableMap toColumns(List<AppListLoader.AppEntry> entries) {
+        int size = entries.size();
+        StringBuilder packageNames = new StringBuilder(size * 24);
+        StringBuilder names = new StringBuilder(size * 16);
+        StringBuilder iconUris = new StringBuilder(size * 64);
+        StringBuilder launchable = new StringBuilder(size);
+        for (int i = 0; i < size; i++) {
+            AppListLoader.AppEntry entry = entries.get(i);
+            if (i > 0) {
+                packageNames.append(SEPARATOR);
+                names.append(SEPARATOR);
+                iconUris.append(SEPARATOR);
+            }
+            packageNames.append(entry.packageName);
+            names.append(entry.name != null ? entry.name : "");
+            iconUris.append(entry.iconUri != null ? entry.iconUri : "");
+            launchable.append(entry.launchable ? '1' : '0');
+        }
+        WritableMap columns = Arguments.createMap();
+        columns.putInt("count", size);
+        columns.putString("packageNames", packageNames.toString());
+        columns.putString("names", names.toString());
+        columns.putString("iconUris", iconUris.toString());
+        columns.putString("launchable", launchable.toString());
+        return columns;
+    }
+
+    private WritableArray toWritableArray(List<AppListLoader.AppEntry> entries) {
+        WritableArray array = Arguments.createArray();
+        for (AppListLoader.AppEntry entry : entries) {
+            array.pushMap(toWritableMap(entry));
+        }
+        return array;
+    }
+
+    private WritableMap toWritableMap(AppListLoader.AppEntry entry) {
+        WritableMap appMap = Arguments.createMap();
+        appMap.putString("name", entry.name);
+        appMap.putString("packageName", entry.packageName);
+        appMap.putString("iconUri", entry.iconUri);
+        appMap.putBoolean("launchable", entry.launchable);
+        return appMap;
+    }
+
+    private int defaultIconSizePx() {
+        return AppCatalog.defaultIconSizePx(reactContext);
+    }
+
+    private void emit(String eventName, WritableMap params) {
+        if (reactContext.hasActiveReactInstance()) {
+            reactContext.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class).emit(eventName, params);
         }
     }
-}
\ No newline at end of file
+}
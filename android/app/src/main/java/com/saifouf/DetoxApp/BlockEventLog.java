@@ -0,0 +1,251 @@
+package com.saifouf.DetoxApp;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.saifouf.detox.core.RuleMatcher;
+import com.saifouf.detox.core.WeekSchedule;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Append-only history of blocks, stored as fixed-size records in memory-mapped
+ * segment files. Appending is a handful of stores into the mapping; the kernel
+ * writes pages back, so the hot path makes no syscalls. A new segment is mapped
+ * only on rotation, and the oldest segments are deleted past MAX_SEGMENTS.
+ *
+ * Segment layout: 16-byte header (magic, version, record count, reserved),
+ * then RECORD_SIZE-byte records:
+ *   0  long  block time (epoch ms)
+ *   8  int   detection-to-block latency (us)
+ *   12 byte  rule that fired (RULE_*)
+ *   13 byte  package name length
+ *   16       package name (ASCII, truncated to MAX_PACKAGE_BYTES)
+ */
+public class BlockEventLog {
+    private static final String TAG = "BlockEventLog";
+    public static final int RULE_SCHEDULE = RuleMatcher.RULE_SCHEDULE;
+    public static final int RULE_QUOTA = RuleMatcher.RULE_QUOTA;
+
+    private static final String DIR_NAME = "block_log";
+    private static final int MAGIC = 0x424c4f47; // "BLOG"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int COUNT_OFFSET = 8;
+    private static final int RECORD_SIZE = 128;
+    private static final int MAX_PACKAGE_BYTES = RECORD_SIZE - 16;
+    private static final int RECORDS_PER_SEGMENT = 4096;
+    private static final int SEGMENT_SIZE = HEADER_SIZE + RECORD_SIZE * RECORDS_PER_SEGMENT;
+    private static final int MAX_SEGMENTS = 8;
+
+    private static BlockEventLog instance;
+
+    private final File dir;
+    // Guarded by this
+    private MappedByteBuffer segment;
+    private int segmentIndex = -1;
+    private int count = 0;
+
+    public static synchronized BlockEventLog get(Context context) {
+        if (instance == null) {
+            instance = new BlockEventLog(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private BlockEventLog(Context context) {
+        dir = new File(context.getFilesDir(), DIR_NAME);
+        if (!dir.exists() && !dir.mkdirs()) {
+            Log.e(TAG, "Unable to create block log dir");
+        }
+    }
+
+    public synchronized void append(String packageName, long timestamp, int latencyMicros, int rule) {
+        try {
+            if (segment == null) {
+                openLatestSegment();
+            }
+            if (count == RECORDS_PER_SEGMENT) {
+                rotate();
+            }
+            int position = HEADER_SIZE + count * RECORD_SIZE;
+            segment.putLong(position, timestamp);
+            segment.putInt(position + 8, latencyMicros);
+            segment.put(position + 12, (byte) rule);
+            int length = Math.min(packageName.length(), MAX_PACKAGE_BYTES);
+            segment.put(position + 13, (byte) length);
+            for (int i = 0; i < length; i++) {
+                segment.put(position + 16 + i, (byte) packageName.charAt(i));
+            }
+            // Publish the record by bumping the count last
+            count++;
+            segment.putInt(COUNT_OFFSET, count);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to append block event: " + e.getMessage());
+        }
+    }
+
+    public synchronized void flush() {
+        if (segment != null) {
+            segment.force();
+        }
+    }
+
+    public static class DailyCounts {
+        // Local day starts, ascending
+        public final long[] days;
+        // Per package, counts aligned with days
+        public final Map<String, int[]> counts;
+        public final int total;
+
+        DailyCounts(long[] days, Map<String, int[]> counts, int total) {
+            this.days = days;
+            this.counts = counts;
+            this.total = total;
+        }
+    }
+
+    // Block counts per package per local day for blocks in [fromMs, toMs). Segments this instance
+    // does not write are mapped afresh, so the app process sees what the blocker process appended
+    public synchronized DailyCounts aggregate(long fromMs, long toMs) {
+        Map<String, Map<Long, Integer>> byPackage = new HashMap<>();
+        TreeMap<Long, Integer> dayIndex = new TreeMap<>();
+        int total = 0;
+        byte[] name = new byte[MAX_PACKAGE_BYTES];
+        for (int index : listSegments()) {
+            ByteBuffer buffer;
+            try {
+                buffer = index == segmentIndex && segment != null ? segment.duplicate() : mapReadOnly(index);
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to read segment " + index + ": " + e.getMessage());
+                continue;
+            }
+            if (buffer == null || buffer.getInt(0) != MAGIC) {
+                continue;
+            }
+            int records = Math.min(buffer.getInt(COUNT_OFFSET), RECORDS_PER_SEGMENT);
+            for (int i = 0; i < records; i++) {
+                int position = HEADER_SIZE + i * RECORD_SIZE;
+                long timestamp = buffer.getLong(position);
+                if (timestamp < fromMs || timestamp >= toMs) {
+                    continue;
+                }
+                int length = buffer.get(position + 13) & 0xff;
+                for (int j = 0; j < length; j++) {
+                    name[j] = buffer.get(position + 16 + j);
+                }
+                String packageName = new String(name, 0, length, StandardCharsets.US_ASCII);
+                long day = WeekSchedule.startOfDay(timestamp);
+                dayIndex.put(day, 0);
+                Map<Long, Integer> perDay = byPackage.get(packageName);
+                if (perDay == null) {
+                    perDay = new HashMap<>();
+                    byPackage.put(packageName, perDay);
+                }
+                Integer previous = perDay.get(day);
+                perDay.put(day, previous != null ? previous + 1 : 1);
+                total++;
+            }
+        }
+
+        long[] days = new long[dayIndex.size()];
+        int slot = 0;
+        for (Map.Entry<Long, Integer> entry : dayIndex.entrySet()) {
+            days[slot] = entry.getKey();
+            entry.setValue(slot++);
+        }
+        Map<String, int[]> counts = new HashMap<>();
+        for (Map.Entry<String, Map<Long, Integer>> entry : byPackage.entrySet()) {
+            int[] row = new int[days.length];
+            for (Map.Entry<Long, Integer> perDay : entry.getValue().entrySet()) {
+                row[dayIndex.get(perDay.getKey())] = perDay.getValue();
+            }
+            counts.put(entry.getKey(), row);
+        }
+        return new DailyCounts(days, counts, total);
+    }
+
+    // Called with the lock held
+    private void openLatestSegment() throws IOException {
+        int[] segments = listSegments();
+        int latest = segments.length > 0 ? segments[segments.length - 1] : 0;
+        map(latest);
+    }
+
+    // Called with the lock held
+    private void rotate() throws IOException {
+        segment.force();
+        map(segmentIndex + 1);
+        int[] segments = listSegments();
+        for (int i = 0; i < segments.length - MAX_SEGMENTS; i++) {
+            new File(dir, segmentName(segments[i])).delete();
+        }
+    }
+
+    // Called with the lock held
+    private void map(int index) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(new File(dir, segmentName(index)), "rw");
+        try {
+            boolean fresh = file.length() < SEGMENT_SIZE;
+            file.setLength(SEGMENT_SIZE);
+            segment = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+            if (fresh || segment.getInt(0) != MAGIC) {
+                segment.putInt(0, MAGIC);
+                segment.putInt(4, VERSION);
+                segment.putInt(COUNT_OFFSET, 0);
+            }
+            segmentIndex = index;
+            count = Math.min(segment.getInt(COUNT_OFFSET), RECORDS_PER_SEGMENT);
+        } finally {
+            // The mapping stays valid after the channel is closed
+            file.close();
+        }
+    }
+
+    private ByteBuffer mapReadOnly(int index) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(new File(dir, segmentName(index)), "r");
+        try {
+            if (file.length() < SEGMENT_SIZE) {
+                return null;
+            }
+            return file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, SEGMENT_SIZE);
+        } finally {
+            file.close();
+        }
+    }
+
+    private int[] listSegments() {
+        String[] names = dir.list();
+        if (names == null) {
+            return new int[0];
+        }
+        int[] indexes = new int[names.length];
+        int size = 0;
+        for (String name : names) {
+            if (name.startsWith("seg-") && name.endsWith(".bin")) {
+                try {
+                    indexes[size++] = Integer.parseInt(name.substring(4, name.length() - 4));
+                } catch (NumberFormatException ignored) {
+                    // not ours
+                }
+            }
+        }
+        int[] result = Arrays.copyOf(indexes, size);
+        Arrays.sort(result);
+        return result;
+    }
+
+    private static String segmentName(int index) {
+        return "seg-" + index + ".bin";
+    }
+}
@@ -0,0 +1,253 @@
+package com.saifouf.DetoxApp;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.graphics.Color;
+import android.graphics.PixelFormat;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.provider.Settings;
+import android.util.Log;
+import android.util.TypedValue;
+import android.view.Gravity;
+import android.view.View;
+import android.view.WindowManager;
+import android.widget.Button;
+import android.widget.FrameLayout;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+/**
+ * Full-screen block screen drawn through WindowManager. The view is built and
+ * attached once, hidden and untouchable, so blocking is a visibility flip on the
+ * main thread instead of a chain of activity launches. MainActivity is started
+ * only from the Details button.
+ */
+public class BlockOverlay {
+    private static final String TAG = "BlockOverlay";
+
+    public interface ShownCallback {
+        // Runs on the main thread once the overlay is visible
+        void onShown(long shownAtNanos);
+
+        // Runs on the main thread when the view could not be attached; nothing is on screen
+        void onAttachFailed();
+    }
+
+    private final Context context;
+    private final WindowManager windowManager;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final WindowManager.LayoutParams params;
+
+    // Main thread only
+    private FrameLayout root;
+    private TextView titleView;
+    private TextView messageView;
+    private boolean attached = false;
+    private boolean showing = false;
+    private String blockedPackage = null;
+
+    public BlockOverlay(Context context) {
+        this.context = context.getApplicationContext();
+        this.windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+        this.params = createLayoutParams();
+    }
+
+    public static boolean canDraw(Context context) {
+        return Build.VERSION.SDK_INT < Build.VERSION_CODES.M || Settings.canDrawOverlays(context);
+    }
+
+    // Builds and attaches the hidden view ahead of time; call on the main thread
+    public void warmUp() {
+        if (attached || !canDraw(context)) {
+            return;
+        }
+        if (root == null) {
+            root = buildView();
+        }
+        try {
+            windowManager.addView(root, params);
+            attached = true;
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to attach overlay: " + e.getMessage());
+        }
+    }
+
+    // Safe from any thread; returns false when the overlay cannot be drawn. An attach failure
+    // surfaces later, through the callback
+    public boolean show(final String packageName, final int rule, final ShownCallback callback) {
+        if (!canDraw(context)) {
+            return false;
+        }
+        mainHandler.postAtFrontOfQueue(new Runnable() {
+            @Override
+            public void run() {
+                warmUp();
+                if (!attached) {
+                    if (callback != null) {
+                        callback.onAttachFailed();
+                    }
+                    return;
+                }
+                blockedPackage = packageName;
+                titleView.setText(rule == BlockEventLog.RULE_QUOTA ? "Daily limit reached" : "App blocked");
+                messageView.setText(packageName);
+                if (!showing) {
+                    params.flags &= ~(WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE
+                            | WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE);
+                    root.setVisibility(View.VISIBLE);
+                    windowManager.updateViewLayout(root, params);
+                    showing = true;
+                }
+                if (callback != null) {
+                    callback.onShown(SystemClock.elapsedRealtimeNanos());
+                }
+                // Label lookup is a binder call, so it comes after the block is on screen
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (showing && packageName.equals(blockedPackage)) {
+                            messageView.setText(resolveLabel(packageName)
+                                    + " is restricted right now. Take a break.");
+                        }
+                    }
+                });
+            }
+        });
+        return true;
+    }
+
+    public void hide() {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                hideNow();
+            }
+        });
+    }
+
+    public void release() {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (attached) {
+                    windowManager.removeViewImmediate(root);
+                    attached = false;
+                    showing = false;
+                }
+            }
+        });
+    }
+
+    // Main thread only
+    private void hideNow() {
+        if (!attached || !showing) {
+            return;
+        }
+        params.flags |= WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE
+                | WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE;
+        root.setVisibility(View.GONE);
+        windowManager.updateViewLayout(root, params);
+        showing = false;
+    }
+
+    private void openDetails() {
+        Intent mainIntent = new Intent(context, MainActivity.class);
+        mainIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_SINGLE_TOP);
+        mainIntent.putExtra("navigateToRestriction", true);
+        mainIntent.putExtra("blockedPackage", blockedPackage);
+        context.startActivity(mainIntent);
+        hideNow();
+    }
+
+    private void goHome() {
+        Intent homeIntent = new Intent(Intent.ACTION_MAIN);
+        homeIntent.addCategory(Intent.CATEGORY_HOME);
+        homeIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        context.startActivity(homeIntent);
+        hideNow();
+    }
+
+    private String resolveLabel(String packageName) {
+        PackageManager packageManager = context.getPackageManager();
+        try {
+            return packageManager.getApplicationLabel(packageManager.getApplicationInfo(packageName, 0)).toString();
+        } catch (PackageManager.NameNotFoundException e) {
+            return packageName;
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private static WindowManager.LayoutParams createLayoutParams() {
+        int type = Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                ? WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY
+                : WindowManager.LayoutParams.TYPE_PHONE;
+        // Attached hidden: not touchable or focusable until shown
+        return new WindowManager.LayoutParams(
+                WindowManager.LayoutParams.MATCH_PARENT,
+                WindowManager.LayoutParams.MATCH_PARENT,
+                type,
+                WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE
+                        | WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE
+                        | WindowManager.LayoutParams.FLAG_LAYOUT_IN_SCREEN,
+                PixelFormat.OPAQUE);
+    }
+
+    private FrameLayout buildView() {
+        FrameLayout frame = new FrameLayout(context);
+        frame.setBackgroundColor(Color.parseColor("#6366f1"));
+        frame.setVisibility(View.GONE);
+
+        LinearLayout column = new LinearLayout(context);
+        column.setOrientation(LinearLayout.VERTICAL);
+        column.setGravity(Gravity.CENTER_HORIZONTAL);
+        int padding = dp(32);
+        column.setPadding(padding, padding, padding, padding);
+
+        titleView = new TextView(context);
+        titleView.setTextColor(Color.WHITE);
+        titleView.setTextSize(TypedValue.COMPLEX_UNIT_SP, 28);
+        titleView.setGravity(Gravity.CENTER);
+        column.addView(titleView);
+
+        messageView = new TextView(context);
+        messageView.setTextColor(Color.WHITE);
+        messageView.setTextSize(TypedValue.COMPLEX_UNIT_SP, 16);
+        messageView.setGravity(Gravity.CENTER);
+        messageView.setPadding(0, dp(16), 0, dp(32));
+        column.addView(messageView);
+
+        Button closeButton = new Button(context);
+        closeButton.setText("Close");
+        closeButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                goHome();
+            }
+        });
+        column.addView(closeButton);
+
+        Button detailsButton = new Button(context);
+        detailsButton.setText("Details");
+        detailsButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                openDetails();
+            }
+        });
+        column.addView(detailsButton);
+
+        frame.addView(column, new FrameLayout.LayoutParams(
+                FrameLayout.LayoutParams.MATCH_PARENT,
+                FrameLayout.LayoutParams.WRAP_CONTENT,
+                Gravity.CENTER));
+        return frame;
+    }
+
+    private int dp(int value) {
+        return Math.round(value * context.getResources().getDisplayMetrics().density);
+    }
+}
@@ -0,0 +1,200 @@
+package com.saifouf.DetoxApp;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Messenger;
+import android.os.RemoteException;
+import android.util.Log;
+import android.util.SparseArray;
+
+/**
+ * App-process end of the BlockerProtocol. Binds to AppBlockingService without
+ * creating it, so the connection comes and goes with the service; while it is
+ * down, sends are dropped and queries answer null so callers fall back to
+ * their local data. All state lives on the main thread.
+ */
+final class BlockerClient {
+    private static final String TAG = "BlockerClient";
+    private static final long QUERY_TIMEOUT_MS = 2000;
+
+    interface Callback {
+        // Null when the service is not running or did not answer in time
+        void onResult(Bundle result);
+    }
+
+    private static BlockerClient instance;
+
+    private final Context context;
+    private final Handler handler = new Handler(Looper.getMainLooper(), new Handler.Callback() {
+        @Override
+        public boolean handleMessage(Message msg) {
+            return onServiceMessage(msg);
+        }
+    });
+    private final Messenger replyTo = new Messenger(handler);
+    private final ServiceConnection connection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            service = new Messenger(binder);
+            send(Message.obtain(null, BlockerProtocol.MSG_REGISTER_CLIENT, listening ? 1 : 0, 0));
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            service = null;
+            failPending();
+        }
+    };
+
+    // Main thread only
+    private boolean bound = false;
+    private Messenger service = null;
+    private boolean listening = false;
+    private int nextRequestId = 1;
+    private final SparseArray<Callback> pending = new SparseArray<>();
+
+    static synchronized BlockerClient get(Context context) {
+        if (instance == null) {
+            instance = new BlockerClient(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private BlockerClient(Context context) {
+        this.context = context;
+    }
+
+    // Safe to call repeatedly; without BIND_AUTO_CREATE this never starts the service
+    void connect() {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!bound) {
+                    bound = context.bindService(new Intent(context, AppBlockingService.class), connection, 0);
+                }
+            }
+        });
+    }
+
+    void setListening(final boolean listening) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (BlockerClient.this.listening != listening) {
+                    BlockerClient.this.listening = listening;
+                    send(Message.obtain(null, BlockerProtocol.MSG_SET_LISTENING, listening ? 1 : 0, 0));
+                }
+            }
+        });
+    }
+
+    void notifyRulesChanged() {
+        post(Message.obtain(null, BlockerProtocol.MSG_RULES_CHANGED));
+    }
+
+    void setTraceLevel(int level) {
+        post(Message.obtain(null, BlockerProtocol.MSG_SET_TRACE_LEVEL, level, 0));
+    }
+
+    void setDetectorMode(String mode) {
+        Message msg = Message.obtain(null, BlockerProtocol.MSG_SET_DETECTOR_MODE);
+        Bundle data = new Bundle();
+        data.putString(BlockerProtocol.KEY_MODE, mode);
+        msg.setData(data);
+        post(msg);
+    }
+
+    // One of BlockerProtocol.QUERY_*; the callback runs on the main thread
+    void query(final int kind, final Callback callback) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (service == null) {
+                    callback.onResult(null);
+                    return;
+                }
+                final int requestId = nextRequestId++;
+                pending.put(requestId, callback);
+                if (!send(Message.obtain(null, BlockerProtocol.MSG_QUERY, requestId, kind))) {
+                    complete(requestId, null);
+                    return;
+                }
+                handler.postDelayed(new Runnable() {
+                    @Override
+                    public void run() {
+                        complete(requestId, null);
+                    }
+                }, QUERY_TIMEOUT_MS);
+            }
+        });
+    }
+
+    private void post(final Message msg) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                send(msg);
+            }
+        });
+    }
+
+    // Main thread; false when the message did not reach the service
+    private boolean send(Message msg) {
+        if (service == null) {
+            msg.recycle();
+            return false;
+        }
+        msg.replyTo = replyTo;
+        try {
+            service.send(msg);
+            return true;
+        } catch (RemoteException e) {
+            Log.e(TAG, "Blocker service unreachable: " + e.getMessage());
+            service = null;
+            failPending();
+            return false;
+        }
+    }
+
+    private boolean onServiceMessage(Message msg) {
+        Bundle data = msg.getData();
+        switch (msg.what) {
+            case BlockerProtocol.MSG_FOREGROUND_CHANGED:
+                AppBlockingModule.emitForegroundChanged(data.getString(BlockerProtocol.KEY_PACKAGE),
+                        data.getLong(BlockerProtocol.KEY_TIMESTAMP));
+                return true;
+            case BlockerProtocol.MSG_APP_BLOCKED:
+                AppBlockingModule.emitAppBlocked(data.getString(BlockerProtocol.KEY_PACKAGE),
+                        data.getInt(BlockerProtocol.KEY_RULE), data.getLong(BlockerProtocol.KEY_TIMESTAMP));
+                return true;
+            case BlockerProtocol.MSG_QUERY_RESULT:
+                complete(msg.arg1, data);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void complete(int requestId, Bundle result) {
+        Callback callback = pending.get(requestId);
+        if (callback != null) {
+            pending.remove(requestId);
+            callback.onResult(result);
+        }
+    }
+
+    private void failPending() {
+        SparseArray<Callback> callbacks = pending.clone();
+        pending.clear();
+        for (int i = 0; i < callbacks.size(); i++) {
+            callbacks.valueAt(i).onResult(null);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.saifouf.DetoxApp;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Message;
+import android.os.Messenger;
+import android.os.RemoteException;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Service end of the BlockerProtocol: tracks the app-process clients, fans
+ * monitor events out to the ones whose JS listens, and hands settings and
+ * queries to the service. Everything runs on the scheduler thread.
+ */
+final class BlockerHost implements EventPublisher.Sink {
+    private static final String TAG = "BlockerHost";
+
+    interface Delegate {
+        void onRulesChanged();
+
+        void onTraceLevelChanged(int level);
+
+        void onDetectorModeChanged(String mode);
+
+        // One of BlockerProtocol.QUERY_*
+        Bundle query(int kind);
+    }
+
+    private final Delegate delegate;
+    private final Messenger messenger;
+    // Client -> whether its JS listens for events
+    private final Map<Messenger, Boolean> clients = new HashMap<>();
+
+    BlockerHost(Handler handler, Delegate delegate) {
+        this.delegate = delegate;
+        messenger = new Messenger(new Handler(handler.getLooper(), new Handler.Callback() {
+            @Override
+            public boolean handleMessage(Message msg) {
+                return onClientMessage(msg);
+            }
+        }));
+    }
+
+    IBinder getBinder() {
+        return messenger.getBinder();
+    }
+
+    @Override
+    public boolean hasListeners() {
+        return clients.containsValue(Boolean.TRUE);
+    }
+
+    @Override
+    public boolean emitForegroundChanged(String packageName, long timestamp) {
+        Bundle data = new Bundle();
+        data.putString(BlockerProtocol.KEY_PACKAGE, packageName);
+        data.putLong(BlockerProtocol.KEY_TIMESTAMP, timestamp);
+        return broadcast(BlockerProtocol.MSG_FOREGROUND_CHANGED, data);
+    }
+
+    @Override
+    public boolean emitAppBlocked(String packageName, int rule, long timestamp) {
+        Bundle data = new Bundle();
+        data.putString(BlockerProtocol.KEY_PACKAGE, packageName);
+        data.putInt(BlockerProtocol.KEY_RULE, rule);
+        data.putLong(BlockerProtocol.KEY_TIMESTAMP, timestamp);
+        return broadcast(BlockerProtocol.MSG_APP_BLOCKED, data);
+    }
+
+    // True when at least one listening client got the event; dead clients are dropped
+    private boolean broadcast(int what, Bundle data) {
+        boolean delivered = false;
+        Iterator<Map.Entry<Messenger, Boolean>> iterator = clients.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Messenger, Boolean> client = iterator.next();
+            if (!client.getValue()) {
+                continue;
+            }
+            Message msg = Message.obtain(null, what);
+            msg.setData(data);
+            try {
+                client.getKey().send(msg);
+                delivered = true;
+            } catch (RemoteException e) {
+                iterator.remove();
+            }
+        }
+        return delivered;
+    }
+
+    private boolean onClientMessage(Message msg) {
+        switch (msg.what) {
+            case BlockerProtocol.MSG_REGISTER_CLIENT:
+                if (msg.replyTo != null) {
+                    clients.put(msg.replyTo, msg.arg1 != 0);
+                }
+                // A MSG_RULES_CHANGED sent before the client was bound was dropped
+                delegate.onRulesChanged();
+                return true;
+            case BlockerProtocol.MSG_SET_LISTENING:
+                if (msg.replyTo != null) {
+                    clients.put(msg.replyTo, msg.arg1 != 0);
+                }
+                return true;
+            case BlockerProtocol.MSG_RULES_CHANGED:
+                delegate.onRulesChanged();
+                return true;
+            case BlockerProtocol.MSG_SET_TRACE_LEVEL:
+                delegate.onTraceLevelChanged(msg.arg1);
+                return true;
+            case BlockerProtocol.MSG_SET_DETECTOR_MODE:
+                delegate.onDetectorModeChanged(msg.getData().getString(BlockerProtocol.KEY_MODE));
+                return true;
+            case BlockerProtocol.MSG_QUERY:
+                reply(msg.replyTo, msg.arg1, delegate.query(msg.arg2));
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void reply(Messenger client, int requestId, Bundle result) {
+        if (client == null) {
+            return;
+        }
+        Message reply = Message.obtain(null, BlockerProtocol.MSG_QUERY_RESULT, requestId, 0);
+        reply.setData(result != null ? result : new Bundle());
+        try {
+            client.send(reply);
+        } catch (RemoteException e) {
+            Log.e(TAG, "Failed to answer query: " + e.getMessage());
+            clients.remove(client);
+        }
+    }
+}
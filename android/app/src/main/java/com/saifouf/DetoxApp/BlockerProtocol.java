@@ -0,0 +1,85 @@
+package com.saifouf.DetoxApp;
+
+import android.app.Application;
+import android.os.Build;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * Messages between the app process and the ":blocker" process that hosts
+ * AppBlockingService (see BlockerClient and AppBlockingService.onBind). Rules
+ * themselves travel through the RestrictionFile on disk; messages only carry
+ * change notifications, settings, events and small query results.
+ */
+final class BlockerProtocol {
+    static final String PROCESS_SUFFIX = ":blocker";
+
+    // App -> service. replyTo is the client's Messenger
+    static final int MSG_REGISTER_CLIENT = 1;      // arg1: 1 when JS listens for events
+    static final int MSG_SET_LISTENING = 2;        // arg1: 1 when JS listens for events
+    static final int MSG_RULES_CHANGED = 3;        // RestrictionFile was written, reload it
+    static final int MSG_SET_TRACE_LEVEL = 4;      // arg1: Tracer level
+    static final int MSG_SET_DETECTOR_MODE = 5;    // data: KEY_MODE
+    static final int MSG_QUERY = 6;                // arg1: request id, arg2: QUERY_*
+
+    // Service -> app
+    static final int MSG_FOREGROUND_CHANGED = 20;  // data: KEY_PACKAGE, KEY_TIMESTAMP
+    static final int MSG_APP_BLOCKED = 21;         // data: KEY_PACKAGE, KEY_RULE, KEY_TIMESTAMP
+    static final int MSG_QUERY_RESULT = 22;        // arg1: request id, data: result
+
+    static final int QUERY_METRICS = 1;
+    // Written to a file by the service; a full ring does not fit in a binder transaction
+    static final int QUERY_TRACE_DUMP = 2;
+    static final int QUERY_TODAY_USAGE = 3;
+    static final int QUERY_STATUS = 4;
+
+    static final String KEY_PACKAGE = "packageName";
+    static final String KEY_TIMESTAMP = "timestamp";
+    static final String KEY_RULE = "rule";
+    static final String KEY_MODE = "mode";
+    static final String KEY_TRACE_PATH = "tracePath";
+    static final String KEY_APPLIED_GENERATION = "appliedGeneration";
+    static final String KEY_ENGINE = "engine";
+    static final String KEY_ACCESSIBILITY_CONNECTED = "accessibilityConnected";
+
+    private static String processName;
+
+    private BlockerProtocol() {
+    }
+
+    static boolean isBlockerProcess() {
+        String name = getProcessName();
+        return name != null && name.endsWith(PROCESS_SUFFIX);
+    }
+
+    private static synchronized String getProcessName() {
+        if (processName == null) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+                processName = Application.getProcessName();
+            } else {
+                processName = readCmdline();
+            }
+        }
+        return processName;
+    }
+
+    private static String readCmdline() {
+        byte[] buffer = new byte[256];
+        try {
+            FileInputStream in = new FileInputStream("/proc/self/cmdline");
+            try {
+                int length = in.read(buffer);
+                int end = 0;
+                while (end < length && buffer[end] != 0) {
+                    end++;
+                }
+                return new String(buffer, 0, end, "US-ASCII");
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
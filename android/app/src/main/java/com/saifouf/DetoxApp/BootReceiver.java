@@ -0,0 +1,38 @@
+package com.saifouf.DetoxApp;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Restarts AppBlockingService after a reboot or an app update, when the user
+ * had monitoring turned on. Runs in the blocker process, so neither the
+ * broadcast nor the restart brings up React Native.
+ */
+public class BootReceiver extends BroadcastReceiver {
+    private static final String TAG = "BootReceiver";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        long receivedElapsed = SystemClock.elapsedRealtime();
+        String action = intent.getAction();
+        String trigger;
+        if (Intent.ACTION_BOOT_COMPLETED.equals(action)) {
+            trigger = AppBlockingService.TRIGGER_BOOT;
+        } else if (Intent.ACTION_MY_PACKAGE_REPLACED.equals(action)) {
+            trigger = AppBlockingService.TRIGGER_PACKAGE_REPLACED;
+        } else {
+            return;
+        }
+        if (!AppBlockingService.isMonitoringEnabled(context)) {
+            return;
+        }
+        try {
+            AppBlockingService.start(context, trigger, receivedElapsed);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to start blocking service: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.saifouf.DetoxApp;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+/**
+ * Pushes monitor events from the service to JS through a Sink (BlockerHost,
+ * which forwards them to the app process).
+ * Foreground changes are coalesced: at most one is sent per MIN_INTERVAL_MS,
+ * carrying the latest package, and nothing is sent when it did not change.
+ * All methods run on the scheduler thread.
+ */
+public class EventPublisher {
+    private static final long MIN_INTERVAL_MS = 500;
+
+    public interface Sink {
+        // True when some JS subscriber would receive the event
+        boolean hasListeners();
+
+        boolean emitForegroundChanged(String packageName, long timestamp);
+
+        boolean emitAppBlocked(String packageName, int rule, long timestamp);
+    }
+
+    private final Handler handler;
+    private final Sink sink;
+    private String pendingPackage = null;
+    private long pendingTimestamp = 0L;
+    private String lastEmittedPackage = null;
+    private long lastEmitUptime = 0L;
+    private boolean flushScheduled = false;
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flushScheduled = false;
+            flush();
+        }
+    };
+
+    public EventPublisher(Handler handler, Sink sink) {
+        this.handler = handler;
+        this.sink = sink;
+    }
+
+    public void onForegroundChanged(String packageName, long timestamp) {
+        pendingPackage = packageName;
+        pendingTimestamp = timestamp;
+        if (flushScheduled || !sink.hasListeners()) {
+            return;
+        }
+        long wait = lastEmitUptime + MIN_INTERVAL_MS - SystemClock.uptimeMillis();
+        if (wait <= 0) {
+            flush();
+        } else {
+            flushScheduled = true;
+            handler.postDelayed(flushRunnable, wait);
+        }
+    }
+
+    // Blocks are already rate-limited per package by the service cooldown
+    public void onBlocked(String packageName, int rule, long timestamp) {
+        // The block screen follows, so the foreground change it causes is the newer news
+        flush();
+        sink.emitAppBlocked(packageName, rule, timestamp);
+    }
+
+    public void release() {
+        handler.removeCallbacks(flushRunnable);
+        flushScheduled = false;
+    }
+
+    private void flush() {
+        if (pendingPackage == null || pendingPackage.equals(lastEmittedPackage)) {
+            return;
+        }
+        if (sink.emitForegroundChanged(pendingPackage, pendingTimestamp)) {
+            lastEmittedPackage = pendingPackage;
+            lastEmitUptime = SystemClock.uptimeMillis();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.saifouf.DetoxApp;
+
+import android.accessibilityservice.AccessibilityService;
+import android.content.Context;
+import android.os.SystemClock;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.inputmethod.InputMethodInfo;
+import android.view.inputmethod.InputMethodManager;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Event-driven foreground detection. Only subscribes to TYPE_WINDOW_STATE_CHANGED
+ * (see res/xml/foreground_accessibility_service.xml) and forwards the package of
+ * each new window to AppBlockingService, which blocks without waiting for a poll.
+ * Reads no window content.
+ */
+public class ForegroundAccessibilityService extends AccessibilityService {
+
+    public interface Sink {
+        // Binder thread of the accessibility framework (main thread); timestamp is wall clock
+        void onWindowStateChanged(String packageName, long timestamp);
+
+        // Connected or disconnected; re-select the engine
+        void onDetectorStateChanged();
+    }
+
+    private static volatile Sink sink;
+    private static volatile boolean connected = false;
+
+    // Windows from these packages sit on top of the app the user is in
+    private final Set<String> ignoredPackages = new HashSet<>();
+
+    static void setSink(Sink newSink) {
+        sink = newSink;
+    }
+
+    public static boolean isConnected() {
+        return connected;
+    }
+
+    private static void notifyStateChanged() {
+        Sink current = sink;
+        if (current != null) {
+            current.onDetectorStateChanged();
+        }
+    }
+
+    @Override
+    protected void onServiceConnected() {
+        super.onServiceConnected();
+        ignoredPackages.clear();
+        ignoredPackages.add("com.android.systemui");
+        InputMethodManager imm = (InputMethodManager) getSystemService(Context.INPUT_METHOD_SERVICE);
+        if (imm != null) {
+            for (InputMethodInfo info : imm.getEnabledInputMethodList()) {
+                ignoredPackages.add(info.getPackageName());
+            }
+        }
+        connected = true;
+        notifyStateChanged();
+    }
+
+    @Override
+    public void onAccessibilityEvent(AccessibilityEvent event) {
+        if (event.getEventType() != AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED) {
+            return;
+        }
+        Sink current = sink;
+        CharSequence packageName = event.getPackageName();
+        if (current == null || packageName == null) {
+            return;
+        }
+        String pkg = packageName.toString();
+        if (ignoredPackages.contains(pkg)) {
+            return;
+        }
+        // Event time is uptime; convert so it lines up with the usage event timestamps
+        long timestamp = System.currentTimeMillis() - (SystemClock.uptimeMillis() - event.getEventTime());
+        current.onWindowStateChanged(pkg, timestamp);
+    }
+
+    @Override
+    public void onInterrupt() {
+    }
+
+    @Override
+    public void onDestroy() {
+        connected = false;
+        notifyStateChanged();
+        super.onDestroy();
+    }
+}
@@ -0,0 +1,77 @@
+package com.saifouf.DetoxApp;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.provider.Settings;
+import android.text.TextUtils;
+
+/**
+ * Selection between the foreground detection engines. The mode is a user
+ * preference; the engine actually used also depends on whether the
+ * accessibility service is connected, so "auto" and "accessibility" fall back
+ * to UsageEvents polling whenever it is not.
+ */
+public final class ForegroundDetectors {
+    public static final String MODE_AUTO = "auto";
+    public static final String MODE_USAGE_EVENTS = "usage_events";
+    public static final String MODE_ACCESSIBILITY = "accessibility";
+
+    public static final int ENGINE_USAGE_EVENTS = 0;
+    public static final int ENGINE_ACCESSIBILITY = 1;
+
+    private static final String PREFS_NAME = "DetoxAppPrefs";
+    private static final String KEY_MODE = "detector_mode";
+
+    // Engine the running service uses, -1 while it is not running. Only meaningful in the
+    // blocker process; the app process asks for it with BlockerProtocol.QUERY_STATUS
+    private static volatile int activeEngine = -1;
+
+    private ForegroundDetectors() {
+    }
+
+    public static String getMode(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).getString(KEY_MODE, MODE_AUTO);
+    }
+
+    public static void setMode(Context context, String mode) {
+        if (!MODE_AUTO.equals(mode) && !MODE_USAGE_EVENTS.equals(mode) && !MODE_ACCESSIBILITY.equals(mode)) {
+            throw new IllegalArgumentException("Unknown detector mode: " + mode);
+        }
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit().putString(KEY_MODE, mode).apply();
+        // The blocker process keeps its own copy of the preferences, so tell it directly
+        BlockerClient.get(context).setDetectorMode(mode);
+    }
+
+    public static int select(String mode, boolean accessibilityConnected) {
+        if (!MODE_USAGE_EVENTS.equals(mode) && accessibilityConnected) {
+            return ENGINE_ACCESSIBILITY;
+        }
+        return ENGINE_USAGE_EVENTS;
+    }
+
+    // Whether the user turned the service on in Settings; it may not be connected yet
+    public static boolean isAccessibilityEnabled(Context context) {
+        String enabled = Settings.Secure.getString(context.getContentResolver(),
+                Settings.Secure.ENABLED_ACCESSIBILITY_SERVICES);
+        if (TextUtils.isEmpty(enabled)) {
+            return false;
+        }
+        ComponentName component = new ComponentName(context, ForegroundAccessibilityService.class);
+        TextUtils.SimpleStringSplitter splitter = new TextUtils.SimpleStringSplitter(':');
+        splitter.setString(enabled);
+        for (String entry : splitter) {
+            if (component.equals(ComponentName.unflattenFromString(entry))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static void setActiveEngine(int engine) {
+        activeEngine = engine;
+    }
+
+    public static int getActiveEngine() {
+        return activeEngine;
+    }
+}
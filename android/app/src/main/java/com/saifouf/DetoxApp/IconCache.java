@@ -0,0 +1,202 @@
+package com.saifouf.DetoxApp;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
+import android.os.Build;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Disk cache of downscaled app icons under the cache dir. Entries are keyed by
+ * package, version code, last update time and pixel size, so a cached file is
+ * valid until the app is updated. Total size is capped with LRU eviction.
+ */
+public class IconCache {
+    private static final String TAG = "IconCache";
+    private static final String DIR_NAME = "app_icons";
+    private static final long MAX_CACHE_BYTES = 8 * 1024 * 1024;
+    // Trim down to this much once the cap is exceeded so we don't evict on every write
+    private static final long TRIM_TARGET_BYTES = MAX_CACHE_BYTES * 3 / 4;
+    private static final int WEBP_QUALITY = 90;
+
+    private static IconCache instance;
+
+    private final File dir;
+    private final Object trimLock = new Object();
+    private long totalBytes = -1L;
+
+    public static synchronized IconCache get(Context context) {
+        if (instance == null) {
+            instance = new IconCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private IconCache(Context context) {
+        dir = new File(context.getCacheDir(), DIR_NAME);
+        if (!dir.exists() && !dir.mkdirs()) {
+            Log.e(TAG, "Unable to create icon cache dir");
+        }
+    }
+
+    // Returns a file:// URI for the icon, rendering it only on a cache miss
+    public String getIconUri(PackageManager packageManager, PackageInfo packageInfo, int sizePx) {
+        String versionKey = versionKey(packageInfo);
+        File file = new File(dir, versionKey + sizePx + ".webp");
+        if (file.exists()) {
+            // Touch for LRU ordering
+            file.setLastModified(System.currentTimeMillis());
+            return Uri.fromFile(file).toString();
+        }
+        try {
+            Drawable icon = packageManager.getApplicationIcon(packageInfo.applicationInfo);
+            write(file, render(icon, sizePx));
+            deleteStaleVersions(packageInfo.packageName, versionKey);
+            return Uri.fromFile(file).toString();
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to cache icon for " + packageInfo.packageName + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public boolean contains(PackageInfo packageInfo, int sizePx) {
+        return new File(dir, versionKey(packageInfo) + sizePx + ".webp").exists();
+    }
+
+    public void remove(String packageName) {
+        deleteStaleVersions(packageName, null);
+    }
+
+    private Bitmap render(Drawable drawable, int sizePx) {
+        Bitmap bitmap = Bitmap.createBitmap(sizePx, sizePx, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        drawable.setBounds(0, 0, sizePx, sizePx);
+        drawable.draw(canvas);
+        return bitmap;
+    }
+
+    private void write(File file, Bitmap bitmap) throws IOException {
+        File tmp = new File(dir, file.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            bitmap.compress(webpFormat(), WEBP_QUALITY, out);
+        } finally {
+            out.close();
+            bitmap.recycle();
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Rename failed for " + file.getName());
+        }
+        onBytesAdded(file.length());
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Bitmap.CompressFormat webpFormat() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            return Bitmap.CompressFormat.WEBP_LOSSY;
+        }
+        return Bitmap.CompressFormat.WEBP;
+    }
+
+    // Deletes every cached size of older versions of the package (all of them when keepVersionKey is null)
+    private void deleteStaleVersions(String packageName, String keepVersionKey) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (packageName.equals(packageNameOf(name))
+                    && (keepVersionKey == null || !name.startsWith(keepVersionKey))) {
+                onBytesRemoved(file.length());
+                file.delete();
+            }
+        }
+    }
+
+    // File names are <package>_<versionCode>_<lastUpdateTime>_<size>.webp
+    private static String packageNameOf(String fileName) {
+        int end = fileName.length();
+        for (int i = 0; i < 3; i++) {
+            end = fileName.lastIndexOf('_', end - 1);
+            if (end <= 0) {
+                return null;
+            }
+        }
+        return fileName.substring(0, end);
+    }
+
+    private void onBytesAdded(long bytes) {
+        synchronized (trimLock) {
+            if (totalBytes < 0) {
+                totalBytes = measure();
+            } else {
+                totalBytes += bytes;
+            }
+            if (totalBytes > MAX_CACHE_BYTES) {
+                trim();
+            }
+        }
+    }
+
+    private void onBytesRemoved(long bytes) {
+        synchronized (trimLock) {
+            if (totalBytes >= 0) {
+                totalBytes = Math.max(0, totalBytes - bytes);
+            }
+        }
+    }
+
+    // Called with trimLock held
+    private void trim() {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        for (File file : files) {
+            if (totalBytes <= TRIM_TARGET_BYTES) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                totalBytes -= length;
+            }
+        }
+    }
+
+    private long measure() {
+        long bytes = 0;
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                bytes += file.length();
+            }
+        }
+        return bytes;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static String versionKey(PackageInfo packageInfo) {
+        long versionCode = Build.VERSION.SDK_INT >= Build.VERSION_CODES.P
+                ? packageInfo.getLongVersionCode()
+                : packageInfo.versionCode;
+        return packageInfo.packageName + "_" + versionCode + "_" + packageInfo.lastUpdateTime + "_";
+    }
+}
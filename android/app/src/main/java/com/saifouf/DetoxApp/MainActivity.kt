@@ -3,6 +3,7 @@ import expo.modules.splashscreen.SplashScreenManager
 
 import android.os.Build
 import android.os.Bundle
+import android.view.ViewTreeObserver
 
 import com.facebook.react.ReactActivity
 import com.facebook.react.ReactActivityDelegate
@@ -21,6 +22,33 @@ class MainActivity : ReactActivity() {
     SplashScreenManager.registerOnActivity(this)
     // @generated end expo-splashscreen
     super.onCreate(null)
+    if (BuildConfig.PREFETCH_APP_CATALOG && !prefetchScheduled) {
+      prefetchAfterFirstFrame()
+    }
+  }
+
+  // Warms the app catalog once the first frame is drawn, so its work (on a background-priority
+  // thread) does not compete with React Native startup and the first render
+  private fun prefetchAfterFirstFrame() {
+    prefetchScheduled = true
+    val decorView = window.decorView
+    val listener = object : ViewTreeObserver.OnDrawListener {
+      private var posted = false
+
+      override fun onDraw() {
+        if (posted) {
+          return
+        }
+        posted = true
+        val self = this
+        // Runs after the frame; listeners cannot be removed from inside onDraw
+        decorView.post {
+          decorView.viewTreeObserver.removeOnDrawListener(self)
+          AppCatalog.get(applicationContext).prefetch()
+        }
+      }
+    }
+    decorView.viewTreeObserver.addOnDrawListener(listener)
   }
 
   /**
@@ -62,4 +90,9 @@ class MainActivity : ReactActivity() {
       // because it's doing more than [Activity.moveTaskToBack] in fact.
       super.invokeDefaultOnBackPressed()
   }
+
+  companion object {
+    // Once per process, not per activity instance
+    private var prefetchScheduled = false
+  }
 }
@@ -2,6 +2,7 @@ package com.saifouf.DetoxApp
 
 import android.app.Application
 import android.content.res.Configuration
+import android.os.Process
 import com.facebook.react.PackageList
 import com.facebook.react.ReactApplication
 import com.facebook.react.ReactNativeApplicationEntryPoint.loadReactNative
@@ -17,29 +18,43 @@ import com.saifouf.DetoxApp.AppBlockingPackage
 
 class MainApplication : Application(), ReactApplication {
 
-  override val reactNativeHost: ReactNativeHost = ReactNativeHostWrapper(
-    this,
-    object : DefaultReactNativeHost(this) {
-      override fun getPackages(): List<ReactPackage> {
-        val packages = PackageList(this).packages.toMutableList()
-        // Add your custom native package here
-        packages.add(AppBlockingPackage())
-        return packages
-      }
+  // Lazy so the blocker process never builds the host
+  override val reactNativeHost: ReactNativeHost by lazy {
+    ReactNativeHostWrapper(
+      this,
+      object : DefaultReactNativeHost(this) {
+        override fun getPackages(): List<ReactPackage> {
+          val packages = PackageList(this).packages.toMutableList()
+          // Add your custom native package here
+          packages.add(AppBlockingPackage())
+          return packages
+        }
 
-      override fun getJSMainModuleName(): String = ".expo/.virtual-metro-entry"
+        override fun getJSMainModuleName(): String = ".expo/.virtual-metro-entry"
 
-      override fun getUseDeveloperSupport(): Boolean = BuildConfig.DEBUG
+        override fun getUseDeveloperSupport(): Boolean = BuildConfig.DEBUG
 
-      override val isNewArchEnabled: Boolean = BuildConfig.IS_NEW_ARCHITECTURE_ENABLED
-    }
-  )
+        override val isNewArchEnabled: Boolean = BuildConfig.IS_NEW_ARCHITECTURE_ENABLED
+      }
+    )
+  }
 
   override val reactHost: ReactHost
     get() = ReactNativeHostWrapper.createReactHost(applicationContext, reactNativeHost)
 
   override fun onCreate() {
     super.onCreate()
+    // AppBlockingService and its receivers run in ":blocker" on plain Android APIs only;
+    // skipping React Native and Expo there keeps that process small
+    if (BlockerProtocol.isBlockerProcess()) {
+      return
+    }
+    // Uninstalls while this process was not running only reached the blocker process,
+    // which cannot write the rules
+    Thread({
+      Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND)
+      RestrictionStore.pruneUninstalled(this)
+    }, "RestrictionPrune").start()
     DefaultNewArchitectureEntryPoint.releaseLevel = try {
       ReleaseLevel.valueOf(BuildConfig.REACT_NATIVE_RELEASE_LEVEL.uppercase())
     } catch (e: IllegalArgumentException) {
@@ -51,6 +66,9 @@ class MainApplication : Application(), ReactApplication {
 
   override fun onConfigurationChanged(newConfig: Configuration) {
     super.onConfigurationChanged(newConfig)
+    if (BlockerProtocol.isBlockerProcess()) {
+      return
+    }
     ApplicationLifecycleDispatcher.onConfigurationChanged(this, newConfig)
   }
 }
@@ -0,0 +1,238 @@
+package com.saifouf.DetoxApp;
+
+import android.app.AlarmManager;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.PowerManager;
+import android.os.Process;
+
+import com.saifouf.detox.core.PollingBackoff;
+import com.saifouf.detox.core.WeekSchedule;
+
+/**
+ * Runs the monitoring tick on a background HandlerThread with the PollingBackoff
+ * cadence (fast after a foreground change, backing off while the same app stays
+ * in front). Polling stops entirely while the screen is off, after one last
+ * tick at screen off. In push mode there is no polling: ticks run on
+ * tickNow(), when a tick capped the next interval and on minute boundaries,
+ * where schedule windows start.
+ *
+ * When a tick reports that no rule can fire before some time (sleepUntil),
+ * ticking stops in both modes and an alarm resumes it at that time.
+ */
+public class MonitorScheduler {
+    private static final String TAG = "MonitorScheduler";
+    private static final long MINUTE_MS = 60 * 1000;
+    // Used when exact alarms are not allowed (Android 12+ without SCHEDULE_EXACT_ALARM)
+    private static final long INEXACT_WINDOW_MS = 60 * 1000;
+    private static final String ALARM_TAG = "DetoxApp:monitorWake";
+    private static final long RELEASE_TIMEOUT_MS = 2000;
+
+    public interface Tick {
+        // Returns true when the foreground app changed during this tick
+        boolean run();
+    }
+
+    private final Context context;
+    private final Tick tick;
+    private final HandlerThread thread;
+    private final Handler handler;
+    private final AlarmManager alarmManager;
+    private final Runnable tickRunnable = new Runnable() {
+        @Override
+        public void run() {
+            boolean changed = tick.run();
+            long now = System.currentTimeMillis();
+            long delay;
+            if (pushMode) {
+                long toNextMinute = MINUTE_MS - now % MINUTE_MS;
+                delay = Math.min(backoff.nextCapOnly(), toNextMinute);
+            } else {
+                delay = backoff.next(changed);
+            }
+            long wakeAt = requestedWake;
+            requestedWake = 0L;
+            if (wakeAt - now > delay) {
+                armWakeAlarm(wakeAt);
+                Tracer.get().trace(Tracer.LEVEL_BASIC, Tracer.SLEEP, null, wakeAt - now, 0);
+                return;
+            }
+            cancelWakeAlarm();
+            handler.postDelayed(this, delay);
+        }
+    };
+    private final AlarmManager.OnAlarmListener wakeListener = new AlarmManager.OnAlarmListener() {
+        @Override
+        public void onAlarm() {
+            // Delivered on the scheduler thread
+            sleeping = false;
+            reschedule();
+        }
+    };
+    private final BroadcastReceiver systemReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            // Delivered on the scheduler thread (see registerReceiver below)
+            if (Intent.ACTION_SCREEN_OFF.equals(intent.getAction())) {
+                if (started && screenOn) {
+                    // Last read before polling stops, so the transitions up to screen off are counted
+                    tick.run();
+                    requestedWake = 0L;
+                }
+                screenOn = false;
+                handler.removeCallbacks(tickRunnable);
+                // Screen on recomputes the wake time anyway
+                cancelWakeAlarm();
+                Tracer.get().trace(Tracer.LEVEL_BASIC, Tracer.SCREEN_OFF, null, 0, 0);
+            } else if (Intent.ACTION_SCREEN_ON.equals(intent.getAction())) {
+                screenOn = true;
+                reschedule();
+                Tracer.get().trace(Tracer.LEVEL_BASIC, Tracer.SCREEN_ON, null, 0, 0);
+            } else if (Intent.ACTION_TIMEZONE_CHANGED.equals(intent.getAction())) {
+                WeekSchedule.refreshTimeZone();
+                reschedule();
+            }
+        }
+    };
+
+    // Only touched on the scheduler thread
+    private final PollingBackoff backoff = new PollingBackoff();
+    private boolean started = false;
+    private boolean screenOn = true;
+    private boolean pushMode = false;
+    // Requested by the current tick, 0 when none
+    private long requestedWake = 0L;
+    private boolean sleeping = false;
+
+    public MonitorScheduler(Context context, Tick tick) {
+        this.context = context;
+        this.tick = tick;
+        thread = new HandlerThread("AppBlockingMonitor", Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+        alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_SCREEN_ON);
+        filter.addAction(Intent.ACTION_SCREEN_OFF);
+        filter.addAction(Intent.ACTION_TIMEZONE_CHANGED);
+        context.registerReceiver(systemReceiver, filter, null, handler);
+    }
+
+    // Called from within a tick: the next tick runs no later than delayMs from now
+    public void capNextInterval(long delayMs) {
+        backoff.capNextInterval(delayMs);
+    }
+
+    // Called from within a tick: nothing needs checking before wallTimeMs, so no tick runs
+    // until then unless tickNow()/restart() asks for one. Ignored when the regular next tick
+    // would come first
+    public void sleepUntil(long wallTimeMs) {
+        requestedWake = wallTimeMs;
+    }
+
+    // Scheduler thread only: drops any sleep and ticks right away at the fast cadence,
+    // e.g. when the rules changed
+    public void restart() {
+        reschedule();
+    }
+
+    // Scheduler thread only
+    public void setPushMode(boolean pushMode) {
+        if (this.pushMode != pushMode) {
+            this.pushMode = pushMode;
+            reschedule();
+        }
+    }
+
+    // Scheduler thread only: runs a tick right away, e.g. on a window change
+    public void tickNow() {
+        if (!started || !screenOn) {
+            return;
+        }
+        handler.removeCallbacks(tickRunnable);
+        tickRunnable.run();
+    }
+
+    public Handler getHandler() {
+        return handler;
+    }
+
+    public void start() {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                started = true;
+                PowerManager pm = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+                screenOn = pm == null || pm.isInteractive();
+                reschedule();
+            }
+        });
+    }
+
+    public void stop() {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                started = false;
+                handler.removeCallbacks(tickRunnable);
+                cancelWakeAlarm();
+            }
+        });
+    }
+
+    // Runs last on the scheduler thread, after any tick in progress, then stops the thread and
+    // waits (bounded) for it, so whatever last writes is not raced by a tick
+    public void release(Runnable last) {
+        try {
+            context.unregisterReceiver(systemReceiver);
+        } catch (IllegalArgumentException ignored) {
+            // already unregistered
+        }
+        handler.removeCallbacksAndMessages(null);
+        // Not on the scheduler thread, so regardless of the sleeping flag
+        alarmManager.cancel(wakeListener);
+        handler.post(last);
+        thread.quitSafely();
+        try {
+            thread.join(RELEASE_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Runs a tick immediately and restarts the fast cadence
+    private void reschedule() {
+        handler.removeCallbacks(tickRunnable);
+        cancelWakeAlarm();
+        if (!started || !screenOn) {
+            return;
+        }
+        backoff.reset();
+        handler.post(tickRunnable);
+    }
+
+    // Non-waking: while the device sleeps the screen is off and nothing is polled anyway.
+    // Re-arming replaces the previous alarm since the listener is the same
+    private void armWakeAlarm(long wallTimeMs) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.S || alarmManager.canScheduleExactAlarms()) {
+            alarmManager.setExact(AlarmManager.RTC, wallTimeMs, ALARM_TAG, wakeListener, handler);
+        } else {
+            alarmManager.setWindow(AlarmManager.RTC, wallTimeMs, INEXACT_WINDOW_MS, ALARM_TAG, wakeListener, handler);
+        }
+        sleeping = true;
+    }
+
+    private void cancelWakeAlarm() {
+        if (!sleeping) {
+            return;
+        }
+        sleeping = false;
+        alarmManager.cancel(wakeListener);
+    }
+}
@@ -9,11 +9,13 @@ import android.provider.Settings;
 import android.util.Log;
 
 import com.facebook.react.bridge.ReactApplicationContext;
-import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
 import com.facebook.react.bridge.Promise;
 
-public class OverlayPermissionModule extends ReactContextBaseJavaModule {
+/**
+ * TurboModule for permission checks (spec: src/specs/NativeOverlayPermissionModule.ts).
+ */
+public class OverlayPermissionModule extends NativeOverlayPermissionModuleSpec {
 
     private static final String TAG = "OverlayPermissionModule";
     private ReactApplicationContext reactContext;
@@ -23,12 +25,8 @@ public class OverlayPermissionModule extends ReactContextBaseJavaModule {
         this.reactContext = reactContext;
     }
 
-    @Override
-    public String getName() {
-        return "OverlayPermissionModule";
-    }
-
     @ReactMethod
+    @Override
     public void checkOverlayPermission(Promise promise) {
         try {
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
@@ -44,6 +42,7 @@ public class OverlayPermissionModule extends ReactContextBaseJavaModule {
     }
 
     @ReactMethod
+    @Override
     public void requestOverlayPermission(Promise promise) {
         try {
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
@@ -60,6 +59,7 @@ public class OverlayPermissionModule extends ReactContextBaseJavaModule {
     }
 
     @ReactMethod
+    @Override
     public void checkUsageStatsPermission(Promise promise) {
         try {
             AppOpsManager appOps = (AppOpsManager) reactContext.getSystemService(Context.APP_OPS_SERVICE);
@@ -71,4 +71,25 @@ public class OverlayPermissionModule extends ReactContextBaseJavaModule {
             promise.resolve(false);
         }
     }
-}
\ No newline at end of file
+
+    // Synchronous variants: both are a single local system call
+    @ReactMethod(isBlockingSynchronousMethod = true)
+    @Override
+    public boolean canDrawOverlays() {
+        return Build.VERSION.SDK_INT < Build.VERSION_CODES.M || Settings.canDrawOverlays(reactContext);
+    }
+
+    @ReactMethod(isBlockingSynchronousMethod = true)
+    @Override
+    public boolean hasUsageStatsAccess() {
+        try {
+            AppOpsManager appOps = (AppOpsManager) reactContext.getSystemService(Context.APP_OPS_SERVICE);
+            int mode = appOps.checkOpNoThrow(AppOpsManager.OPSTR_GET_USAGE_STATS,
+                    android.os.Process.myUid(), reactContext.getPackageName());
+            return mode == AppOpsManager.MODE_ALLOWED;
+        } catch (Exception e) {
+            Log.e(TAG, "Error checking usage stats permission: " + e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.saifouf.DetoxApp;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+
+/**
+ * Prunes an uninstalled package from the usage files, which the blocker
+ * process owns. Declared in the manifest so it runs even when neither process
+ * is alive. The restriction store cannot be written from here; the app process
+ * drops the package's rule and quota itself (AppCatalog while it runs,
+ * RestrictionStore.pruneUninstalled from MainApplication on every start).
+ */
+public class PackageRemovedReceiver extends BroadcastReceiver {
+    @Override
+    public void onReceive(final Context context, Intent intent) {
+        Uri data = intent.getData();
+        if (!Intent.ACTION_PACKAGE_FULLY_REMOVED.equals(intent.getAction()) || data == null) {
+            return;
+        }
+        final String packageName = data.getSchemeSpecificPart();
+        final PendingResult result = goAsync();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    UsageAccountant.get(context).removePackage(packageName, System.currentTimeMillis());
+                    UsageHistory.get(context).removePackage(packageName);
+                } finally {
+                    result.finish();
+                }
+            }
+        }, "PackageRemoved").start();
+    }
+}
@@ -0,0 +1,330 @@
+package com.saifouf.DetoxApp;
+
+import android.util.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Binary persistence for the restriction rules: a versioned base file replaced
+ * by atomic rename, plus an append-only journal of deltas so a toggle writes a
+ * few dozen bytes instead of the whole rule set. The journal is folded into the
+ * base once it grows past a few records. Not thread-safe; RestrictionStore
+ * serializes access under its lock.
+ */
+final class RestrictionFile {
+    private static final String TAG = "RestrictionFile";
+    private static final String BASE_NAME = "restrictions.bin";
+    private static final String JOURNAL_NAME = "restrictions.journal";
+    private static final int BASE_MAGIC = 0x44585231; // "DXR1"
+    private static final int FORMAT_VERSION = 1;
+    // Compact when the journal holds this many records or outgrows the base
+    private static final int MAX_JOURNAL_RECORDS = 32;
+
+    private static final byte OP_UPSERT = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final byte OP_QUOTAS = 3;
+
+    static final class State {
+        // Keyed by package, in insertion order
+        final Map<String, RestrictionRule> rules;
+        final Map<String, Long> quotas;
+        final long generation;
+
+        State(Map<String, RestrictionRule> rules, Map<String, Long> quotas, long generation) {
+            this.rules = rules;
+            this.quotas = quotas;
+            this.generation = generation;
+        }
+    }
+
+    private final File base;
+    private final File journal;
+    private int journalRecords = 0;
+    private boolean journalIntact = true;
+
+    RestrictionFile(File dir) {
+        base = new File(dir, BASE_NAME);
+        journal = new File(dir, JOURNAL_NAME);
+    }
+
+    boolean exists() {
+        return base.exists() || journal.exists();
+    }
+
+    // Base plus every journal record newer than it; null when nothing usable is on disk
+    State load() {
+        State state = null;
+        try {
+            if (base.exists()) {
+                state = readBase(readFully(base));
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to read restriction base: " + e.getMessage());
+        }
+        if (state == null) {
+            state = new State(new LinkedHashMap<String, RestrictionRule>(), new HashMap<String, Long>(), 0L);
+        }
+        journalRecords = 0;
+        journalIntact = true;
+        if (journal.exists()) {
+            try {
+                state = replayJournal(readFully(journal), state);
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to read restriction journal: " + e.getMessage());
+                journalIntact = false;
+            }
+        }
+        return state.generation > 0 ? state : null;
+    }
+
+    void writeBase(State state) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + state.rules.size() * 48);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(BASE_MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(state.generation);
+        writeRules(out, state.rules.values());
+        writeQuotas(out, state.quotas);
+        out.writeInt(crc(bytes.toByteArray(), bytes.size()));
+
+        File tmp = new File(base.getPath() + ".tmp");
+        FileOutputStream file = new FileOutputStream(tmp);
+        try {
+            bytes.writeTo(file);
+            file.getFD().sync();
+        } finally {
+            file.close();
+        }
+        if (!tmp.renameTo(base)) {
+            throw new IOException("Rename failed");
+        }
+        // Records left behind by a crash here are older than the base and skipped on load
+        if (journal.exists() && !journal.delete()) {
+            Log.e(TAG, "Failed to delete restriction journal");
+        }
+        journalRecords = 0;
+        journalIntact = true;
+    }
+
+    void appendUpsert(long generation, Collection<RestrictionRule> rules) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(64 + rules.size() * 48);
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeByte(OP_UPSERT);
+        out.writeLong(generation);
+        writeRules(out, rules);
+        appendRecord(body.toByteArray());
+    }
+
+    void appendRemove(long generation, Collection<String> packages) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(64 + packages.size() * 32);
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeByte(OP_REMOVE);
+        out.writeLong(generation);
+        out.writeInt(packages.size());
+        for (String pkg : packages) {
+            out.writeUTF(pkg);
+        }
+        appendRecord(body.toByteArray());
+    }
+
+    void appendQuotas(long generation, Map<String, Long> quotas) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(64 + quotas.size() * 40);
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeByte(OP_QUOTAS);
+        out.writeLong(generation);
+        writeQuotas(out, quotas);
+        appendRecord(body.toByteArray());
+    }
+
+    boolean needsCompaction() {
+        return !journalIntact || journalRecords >= MAX_JOURNAL_RECORDS || journal.length() > Math.max(base.length(), 4096);
+    }
+
+    // Length and checksum first so a torn write at the tail is detected and dropped
+    private void appendRecord(byte[] body) throws IOException {
+        ByteArrayOutputStream record = new ByteArrayOutputStream(body.length + 8);
+        DataOutputStream out = new DataOutputStream(record);
+        out.writeInt(body.length);
+        out.writeInt(crc(body, body.length));
+        out.write(body);
+
+        FileOutputStream file = new FileOutputStream(journal, true);
+        try {
+            record.writeTo(file);
+            file.getFD().sync();
+        } finally {
+            file.close();
+        }
+        journalRecords++;
+    }
+
+    private static State readBase(byte[] data) throws IOException {
+        if (data.length < 24) {
+            throw new IOException("Truncated base");
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        if (in.readInt() != BASE_MAGIC || in.readInt() != FORMAT_VERSION) {
+            throw new IOException("Unknown format");
+        }
+        DataInputStream tail = new DataInputStream(new ByteArrayInputStream(data, data.length - 4, 4));
+        if (tail.readInt() != crc(data, data.length - 4)) {
+            throw new IOException("Checksum mismatch");
+        }
+        long generation = in.readLong();
+        Map<String, RestrictionRule> rules = new LinkedHashMap<>();
+        for (RestrictionRule rule : readRules(in)) {
+            rules.put(rule.packageName, rule);
+        }
+        return new State(rules, readQuotas(in), generation);
+    }
+
+    // Applies records in generation order and stops at the first gap, torn or corrupt record
+    private State replayJournal(byte[] data, State state) throws IOException {
+        Map<String, RestrictionRule> rules = state.rules;
+        Map<String, Long> quotas = state.quotas;
+        long generation = state.generation;
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        int offset = 0;
+        while (offset < data.length) {
+            if (data.length - offset < 8) {
+                break;
+            }
+            int length = in.readInt();
+            int checksum = in.readInt();
+            if (length < 9 || length > data.length - offset - 8) {
+                break;
+            }
+            byte[] body = new byte[length];
+            in.readFully(body);
+            if (crc(body, length) != checksum) {
+                break;
+            }
+            DataInputStream record = new DataInputStream(new ByteArrayInputStream(body));
+            byte op = record.readByte();
+            long recordGeneration = record.readLong();
+            if (recordGeneration > generation) {
+                if (generation > 0 && recordGeneration != generation + 1) {
+                    Log.e(TAG, "Journal gap after generation " + generation);
+                    break;
+                }
+                try {
+                    // Decode fully before touching the state so a bad record changes nothing
+                    if (op == OP_UPSERT) {
+                        for (RestrictionRule rule : readRules(record)) {
+                            rules.put(rule.packageName, rule);
+                        }
+                    } else if (op == OP_REMOVE) {
+                        List<String> removed = new ArrayList<>();
+                        int count = record.readInt();
+                        for (int i = 0; i < count; i++) {
+                            removed.add(record.readUTF());
+                        }
+                        rules.keySet().removeAll(removed);
+                    } else if (op == OP_QUOTAS) {
+                        quotas = readQuotas(record);
+                    } else {
+                        break;
+                    }
+                } catch (EOFException | IllegalArgumentException e) {
+                    Log.e(TAG, "Bad journal record: " + e.getMessage());
+                    break;
+                }
+                generation = recordGeneration;
+            }
+            offset += 8 + length;
+            journalRecords++;
+        }
+        // Anything appended after a bad tail would never be read back, so force a compaction
+        journalIntact = offset == data.length;
+        return new State(rules, quotas, generation);
+    }
+
+    private static void writeRules(DataOutputStream out, Collection<RestrictionRule> rules) throws IOException {
+        out.writeInt(rules.size());
+        for (RestrictionRule rule : rules) {
+            int dayMask = 0;
+            for (int day = 0; day < RestrictionRule.DAY_KEYS.length; day++) {
+                if (rule.isActiveOn(day)) {
+                    dayMask |= 1 << day;
+                }
+            }
+            out.writeUTF(rule.packageName);
+            out.writeByte(rule.enabled ? 1 : 0);
+            out.writeByte(dayMask);
+            out.writeShort(rule.startMinute);
+            out.writeShort(rule.endMinute);
+        }
+    }
+
+    private static List<RestrictionRule> readRules(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<RestrictionRule> rules = new ArrayList<>(Math.min(count, 1024));
+        boolean[] days = new boolean[RestrictionRule.DAY_KEYS.length];
+        for (int i = 0; i < count; i++) {
+            String pkg = in.readUTF();
+            boolean enabled = in.readByte() != 0;
+            int dayMask = in.readByte();
+            for (int day = 0; day < days.length; day++) {
+                days[day] = (dayMask & (1 << day)) != 0;
+            }
+            int start = in.readShort();
+            int end = in.readShort();
+            rules.add(new RestrictionRule(pkg, enabled, days, start, end));
+        }
+        return rules;
+    }
+
+    private static void writeQuotas(DataOutputStream out, Map<String, Long> quotas) throws IOException {
+        out.writeInt(quotas.size());
+        for (Map.Entry<String, Long> entry : quotas.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeLong(entry.getValue());
+        }
+    }
+
+    private static Map<String, Long> readQuotas(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        Map<String, Long> quotas = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            String pkg = in.readUTF();
+            quotas.put(pkg, in.readLong());
+        }
+        return quotas;
+    }
+
+    private static int crc(byte[] data, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        long length = file.length();
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("File too large");
+        }
+        byte[] data = new byte[(int) length];
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            in.readFully(data);
+        } finally {
+            in.close();
+        }
+        return data;
+    }
+}
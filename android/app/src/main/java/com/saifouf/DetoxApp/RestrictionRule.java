@@ -0,0 +1,111 @@
+package com.saifouf.DetoxApp;
+
+import com.saifouf.detox.core.RuleTable;
+import com.saifouf.detox.core.WeekSchedule;
+import com.saifouf.detox.core.replay.RulesFile;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+
+/**
+ * One app restriction as configured in JS: enabled flag, active days and a
+ * daily HH:mm window. A window whose end is before its start runs overnight.
+ * packageName is the rule key: a package, a "com.facebook.*" prefix or a
+ * "category:game" category (see RuleTable).
+ */
+public final class RestrictionRule {
+    public static final String[] DAY_KEYS = {
+        "monday", "tuesday", "wednesday", "thursday", "friday", "saturday", "sunday"
+    };
+    public static final int MINUTES_PER_DAY = 24 * 60;
+
+    public final String packageName;
+    public final boolean enabled;
+    // Indexed like DAY_KEYS (Monday first)
+    private final boolean[] days;
+    public final int startMinute;
+    public final int endMinute;
+
+    public RestrictionRule(String packageName, boolean enabled, boolean[] days, int startMinute, int endMinute) {
+        if (days.length != DAY_KEYS.length) {
+            throw new IllegalArgumentException("Expected " + DAY_KEYS.length + " days");
+        }
+        if (startMinute < 0 || startMinute >= MINUTES_PER_DAY || endMinute < 0 || endMinute >= MINUTES_PER_DAY) {
+            throw new IllegalArgumentException("Invalid window for " + packageName);
+        }
+        RuleTable.checkKey(packageName);
+        this.packageName = packageName;
+        this.enabled = enabled;
+        this.days = days.clone();
+        this.startMinute = startMinute;
+        this.endMinute = endMinute;
+    }
+
+    // Legacy rules coming from a flat package list block around the clock
+    public static RestrictionRule always(String packageName) {
+        boolean[] days = new boolean[DAY_KEYS.length];
+        Arrays.fill(days, true);
+        return new RestrictionRule(packageName, true, days, 0, MINUTES_PER_DAY - 1);
+    }
+
+    public boolean isActiveOn(int day) {
+        return days[day];
+    }
+
+    // Line for a replay rules file (see RulesFile)
+    public String toRulesLine() {
+        return RulesFile.formatSchedule(packageName, days, startMinute, endMinute);
+    }
+
+    // Minute-of-week bitset of the times this rule blocks
+    public long[] compileSchedule() {
+        return enabled ? WeekSchedule.compile(days, startMinute, endMinute) : WeekSchedule.empty();
+    }
+
+    public static int parseTime(String time) {
+        if (time == null) {
+            throw new IllegalArgumentException("Missing time");
+        }
+        int colon = time.indexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("Invalid time: " + time);
+        }
+        try {
+            int hours = Integer.parseInt(time.substring(0, colon).trim());
+            int minutes = Integer.parseInt(time.substring(colon + 1).trim());
+            if (hours < 0 || hours > 23 || minutes < 0 || minutes > 59) {
+                throw new IllegalArgumentException("Invalid time: " + time);
+            }
+            return hours * 60 + minutes;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid time: " + time);
+        }
+    }
+
+    public JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("packageName", packageName);
+        json.put("enabled", enabled);
+        JSONArray dayArray = new JSONArray();
+        for (boolean day : days) {
+            dayArray.put(day);
+        }
+        json.put("days", dayArray);
+        json.put("start", startMinute);
+        json.put("end", endMinute);
+        return json;
+    }
+
+    public static RestrictionRule fromJson(JSONObject json) throws JSONException {
+        JSONArray dayArray = json.getJSONArray("days");
+        boolean[] days = new boolean[DAY_KEYS.length];
+        for (int i = 0; i < days.length; i++) {
+            days[i] = dayArray.getBoolean(i);
+        }
+        return new RestrictionRule(json.getString("packageName"), json.getBoolean("enabled"),
+                days, json.getInt("start"), json.getInt("end"));
+    }
+}
@@ -0,0 +1,114 @@
+package com.saifouf.DetoxApp;
+
+import com.saifouf.detox.core.RuleTable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable view of the restriction rules. A new instance is published for
+ * every update, so readers never need a lock. Each rule is precompiled into a
+ * minute-of-week bitset held by a core RuleTable.
+ */
+public final class RestrictionSnapshot {
+    public static final RestrictionSnapshot EMPTY = new RestrictionSnapshot(
+            Collections.<RestrictionRule>emptyList(), Collections.<String, Long>emptyMap(), 0L);
+
+    private final List<RestrictionRule> rules;
+    private final Set<String> packages;
+    private final RuleTable table;
+    private final long generation;
+
+    public RestrictionSnapshot(Collection<RestrictionRule> rules, Map<String, Long> dailyQuotas, long generation) {
+        this(rules, compile(rules, null), dailyQuotas, generation);
+    }
+
+    private RestrictionSnapshot(Collection<RestrictionRule> rules, Map<String, long[]> compiled,
+                                Map<String, Long> dailyQuotas, long generation) {
+        this.rules = Collections.unmodifiableList(new ArrayList<>(rules));
+        this.packages = new HashSet<>(compiled.keySet());
+        this.table = new RuleTable(compiled, dailyQuotas);
+        this.generation = generation;
+    }
+
+    // Applies a delta; only the upserted rules are recompiled, the other bitsets are shared
+    public RestrictionSnapshot withChanges(Collection<RestrictionRule> upserts, Collection<String> removed,
+                                           long generation) {
+        Map<String, RestrictionRule> merged = new LinkedHashMap<>();
+        for (RestrictionRule rule : rules) {
+            merged.put(rule.packageName, rule);
+        }
+        merged.keySet().removeAll(removed);
+        Map<String, long[]> compiled = compile(merged.values(), table);
+        for (RestrictionRule rule : upserts) {
+            merged.put(rule.packageName, rule);
+            compiled.put(rule.packageName, rule.compileSchedule());
+        }
+        return new RestrictionSnapshot(merged.values(), compiled, getDailyQuotas(), generation);
+    }
+
+    public RestrictionSnapshot withQuotas(Map<String, Long> dailyQuotas, long generation) {
+        return new RestrictionSnapshot(rules, compile(rules, table), dailyQuotas, generation);
+    }
+
+    // Reuses the bitsets of a previous table where present; schedules are immutable once compiled
+    private static Map<String, long[]> compile(Collection<RestrictionRule> rules, RuleTable previous) {
+        Map<String, long[]> compiled = new HashMap<>();
+        for (RestrictionRule rule : rules) {
+            long[] bits = previous != null ? previous.getSchedule(rule.packageName) : null;
+            compiled.put(rule.packageName, bits != null ? bits : rule.compileSchedule());
+        }
+        return compiled;
+    }
+
+    // Has a rule of its own (enabled or not), an enabled prefix rule or a daily quota.
+    // Category rules need the package's category and are not considered
+    public boolean hasRestriction(String packageName) {
+        return packages.contains(packageName) || table.getDailyQuotaMs(packageName) >= 0
+                || (table.hasPrefixRules() && table.resolveSchedule(packageName, RuleTable.CATEGORY_UNKNOWN) != null);
+    }
+
+    public boolean hasRule(String packageName) {
+        return packages.contains(packageName);
+    }
+
+    public boolean isRestricted(String packageName, int minuteOfWeek) {
+        return table.isScheduled(packageName, minuteOfWeek);
+    }
+
+    // Returns -1 when the package has no daily quota
+    public long getDailyQuotaMs(String packageName) {
+        return table.getDailyQuotaMs(packageName);
+    }
+
+    public boolean hasQuotas() {
+        return table.hasQuotas();
+    }
+
+    public Map<String, Long> getDailyQuotas() {
+        return table.getDailyQuotas();
+    }
+
+    public RuleTable getTable() {
+        return table;
+    }
+
+    public List<RestrictionRule> getRules() {
+        return rules;
+    }
+
+    public int size() {
+        return rules.size();
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+}
@@ -0,0 +1,345 @@
+package com.saifouf.DetoxApp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.util.Log;
+
+import com.saifouf.detox.core.RuleTable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Process-wide holder of the current RestrictionSnapshot. Writers persist to a
+ * RestrictionFile (full rewrites go to the base, deltas to its journal) and
+ * swap the snapshot; the service reads it lock-free. The file is shared between
+ * processes: the app process is the only writer and tells the blocker process
+ * to reload() after each change, where the store is read-only.
+ */
+public final class RestrictionStore {
+    private static final String TAG = "RestrictionStore";
+    static final String PREFS_NAME = "DetoxAppPrefs";
+    // Legacy flat package set, migrated to always-on rules on first load
+    static final String KEY_RESTRICTED_APPS = "restricted_apps";
+    // Pre-binary storage, migrated once into the RestrictionFile
+    private static final String KEY_RULES = "restriction_rules";
+    private static final String KEY_QUOTAS = "daily_quotas";
+    private static final String KEY_GENERATION = "restricted_apps_generation";
+    // Returned by the delta writers when the caller's base generation is stale
+    public static final long STALE = -1L;
+
+    private static final Object lock = new Object();
+    private static volatile RestrictionSnapshot current = null;
+    // Guarded by lock
+    private static RestrictionFile file = null;
+    // Generation the service last evaluated a tick against
+    private static volatile long appliedGeneration = 0L;
+    // Set in the blocker process: no writes, compactions or migrations from there
+    private static volatile boolean readOnly = false;
+
+    private RestrictionStore() {
+    }
+
+    public static RestrictionSnapshot get(Context context) {
+        RestrictionSnapshot snapshot = current;
+        if (snapshot != null) {
+            return snapshot;
+        }
+        synchronized (lock) {
+            if (current == null) {
+                current = load(context.getApplicationContext());
+            }
+            return current;
+        }
+    }
+
+    static void setReadOnly(boolean readOnly) {
+        RestrictionStore.readOnly = readOnly;
+    }
+
+    // Re-reads the file after another process changed it
+    public static RestrictionSnapshot reload(Context context) {
+        synchronized (lock) {
+            current = load(context.getApplicationContext());
+            return current;
+        }
+    }
+
+    // Replaces every rule; rewrites the base file
+    public static long publish(Context context, List<RestrictionRule> rules) throws IOException {
+        synchronized (lock) {
+            checkWritable();
+            RestrictionSnapshot previous = get(context);
+            long generation = previous.getGeneration() + 1;
+            RestrictionSnapshot snapshot = new RestrictionSnapshot(rules, previous.getDailyQuotas(), generation);
+            writeBase(snapshot);
+            current = snapshot;
+            notifyChanged(context);
+            Log.d(TAG, "Published restriction generation " + generation + " (" + snapshot.size() + " rules)");
+            return generation;
+        }
+    }
+
+    // Adds or replaces the given rules. baseGeneration is the generation the caller last
+    // saw (negative to skip the check); returns STALE without changes when it is outdated
+    public static long upsert(Context context, List<RestrictionRule> rules, long baseGeneration) throws IOException {
+        synchronized (lock) {
+            checkWritable();
+            RestrictionSnapshot previous = get(context);
+            if (baseGeneration >= 0 && baseGeneration != previous.getGeneration()) {
+                return STALE;
+            }
+            long generation = previous.getGeneration() + 1;
+            RestrictionSnapshot snapshot = previous.withChanges(rules, Collections.<String>emptyList(), generation);
+            getFile(context).appendUpsert(generation, rules);
+            current = snapshot;
+            maybeCompact();
+            notifyChanged(context);
+            Log.d(TAG, "Upserted " + rules.size() + " rules (generation " + generation + ")");
+            return generation;
+        }
+    }
+
+    // Same contract as upsert; unknown packages are ignored
+    public static long remove(Context context, Collection<String> packages, long baseGeneration) throws IOException {
+        synchronized (lock) {
+            checkWritable();
+            RestrictionSnapshot previous = get(context);
+            if (baseGeneration >= 0 && baseGeneration != previous.getGeneration()) {
+                return STALE;
+            }
+            long generation = previous.getGeneration() + 1;
+            RestrictionSnapshot snapshot = previous.withChanges(
+                    Collections.<RestrictionRule>emptyList(), packages, generation);
+            getFile(context).appendRemove(generation, packages);
+            current = snapshot;
+            maybeCompact();
+            notifyChanged(context);
+            Log.d(TAG, "Removed " + packages.size() + " rules (generation " + generation + ")");
+            return generation;
+        }
+    }
+
+    // Daily foreground budgets in milliseconds, keyed by package
+    public static long publishQuotas(Context context, Map<String, Long> quotas) throws IOException {
+        synchronized (lock) {
+            checkWritable();
+            RestrictionSnapshot previous = get(context);
+            long generation = previous.getGeneration() + 1;
+            RestrictionSnapshot snapshot = previous.withQuotas(quotas, generation);
+            getFile(context).appendQuotas(generation, quotas);
+            current = snapshot;
+            maybeCompact();
+            notifyChanged(context);
+            Log.d(TAG, "Published quota generation " + generation + " (" + quotas.size() + " quotas)");
+            return generation;
+        }
+    }
+
+    // Drops the rule and quota of an uninstalled package; no-op when it had neither
+    public static void removePackage(Context context, String packageName) {
+        prune(context, Collections.singletonList(packageName));
+    }
+
+    // Drops rules and quotas of packages that are no longer installed, for uninstalls while
+    // this process was not running (the blocker process cannot write). One PackageManager
+    // call per package rule, so not on the main thread
+    public static void pruneUninstalled(Context context) {
+        if (readOnly) {
+            return;
+        }
+        RestrictionSnapshot snapshot = get(context);
+        Set<String> keys = new HashSet<>(snapshot.getDailyQuotas().keySet());
+        for (RestrictionRule rule : snapshot.getRules()) {
+            keys.add(rule.packageName);
+        }
+        PackageManager packageManager = context.getPackageManager();
+        List<String> uninstalled = new ArrayList<>();
+        for (String key : keys) {
+            // Prefix and category keys are not packages
+            if (RuleTable.isPrefix(key) || key.startsWith(RuleTable.CATEGORY_PREFIX)) {
+                continue;
+            }
+            try {
+                packageManager.getPackageInfo(key, 0);
+            } catch (PackageManager.NameNotFoundException e) {
+                uninstalled.add(key);
+            }
+        }
+        if (!uninstalled.isEmpty()) {
+            prune(context, uninstalled);
+        }
+    }
+
+    private static void prune(Context context, Collection<String> packages) {
+        synchronized (lock) {
+            RestrictionSnapshot snapshot = get(context);
+            List<String> rules = new ArrayList<>();
+            Map<String, Long> quotas = new HashMap<>(snapshot.getDailyQuotas());
+            boolean quotasChanged = false;
+            for (String packageName : packages) {
+                if (snapshot.hasRule(packageName)) {
+                    rules.add(packageName);
+                }
+                quotasChanged |= quotas.remove(packageName) != null;
+            }
+            try {
+                if (!rules.isEmpty()) {
+                    remove(context, rules, -1L);
+                }
+                if (quotasChanged) {
+                    publishQuotas(context, quotas);
+                }
+                if (!rules.isEmpty() || quotasChanged) {
+                    Log.d(TAG, "Pruned uninstalled packages " + packages);
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to prune " + packages + ": " + e.getMessage());
+            }
+        }
+    }
+
+    static void markApplied(long generation) {
+        appliedGeneration = generation;
+    }
+
+    public static long getAppliedGeneration() {
+        return appliedGeneration;
+    }
+
+    private static void checkWritable() {
+        if (readOnly) {
+            throw new IllegalStateException("Restrictions are read-only in this process");
+        }
+    }
+
+    // After the file is complete, compactions included, so the reload sees a consistent state
+    private static void notifyChanged(Context context) {
+        BlockerClient.get(context).notifyRulesChanged();
+    }
+
+    // Called with the lock held
+    private static RestrictionFile getFile(Context context) {
+        if (file == null) {
+            file = new RestrictionFile(context.getApplicationContext().getFilesDir());
+        }
+        return file;
+    }
+
+    // Called with the lock held
+    private static void writeBase(RestrictionSnapshot snapshot) throws IOException {
+        Map<String, RestrictionRule> rules = new LinkedHashMap<>();
+        for (RestrictionRule rule : snapshot.getRules()) {
+            rules.put(rule.packageName, rule);
+        }
+        file.writeBase(new RestrictionFile.State(rules, snapshot.getDailyQuotas(), snapshot.getGeneration()));
+    }
+
+    // Called with the lock held; a failed compaction leaves the journal in place
+    private static void maybeCompact() {
+        if (readOnly || !file.needsCompaction()) {
+            return;
+        }
+        try {
+            writeBase(current);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to compact restrictions: " + e.getMessage());
+        }
+    }
+
+    // Called with the lock held
+    private static RestrictionSnapshot load(Context context) {
+        RestrictionFile restrictionFile = getFile(context);
+        if (restrictionFile.exists()) {
+            RestrictionFile.State state = restrictionFile.load();
+            if (state == null) {
+                return RestrictionSnapshot.EMPTY;
+            }
+            current = new RestrictionSnapshot(state.rules.values(), state.quotas, state.generation);
+            maybeCompact();
+            return current;
+        }
+        RestrictionSnapshot migrated = loadLegacy(getPrefs(context));
+        // The app process migrates; the blocker just uses the legacy rules until then
+        if (migrated.getGeneration() > 0 && !readOnly) {
+            try {
+                writeBase(migrated);
+                getPrefs(context).edit()
+                        .remove(KEY_RULES)
+                        .remove(KEY_RESTRICTED_APPS)
+                        .remove(KEY_QUOTAS)
+                        .remove(KEY_GENERATION)
+                        .apply();
+                Log.d(TAG, "Migrated " + migrated.size() + " rules to binary storage");
+            } catch (IOException e) {
+                // Keep the preferences so the migration is retried on the next start
+                Log.e(TAG, "Failed to migrate restrictions: " + e.getMessage());
+            }
+        }
+        return migrated;
+    }
+
+    private static RestrictionSnapshot loadLegacy(SharedPreferences prefs) {
+        Map<String, Long> quotas = loadQuotas(prefs);
+        List<RestrictionRule> rules = new ArrayList<>();
+        String json = prefs.getString(KEY_RULES, null);
+        if (json != null) {
+            try {
+                JSONArray array = new JSONArray(json);
+                for (int i = 0; i < array.length(); i++) {
+                    rules.add(RestrictionRule.fromJson(array.getJSONObject(i)));
+                }
+            } catch (JSONException | IllegalArgumentException e) {
+                Log.e(TAG, "Failed to load restriction rules: " + e.getMessage());
+            }
+        } else {
+            Set<String> packages = prefs.getStringSet(KEY_RESTRICTED_APPS, null);
+            if (packages != null) {
+                for (String pkg : packages) {
+                    rules.add(RestrictionRule.always(pkg));
+                }
+            }
+        }
+        if (rules.isEmpty() && quotas.isEmpty()) {
+            return RestrictionSnapshot.EMPTY;
+        }
+        return new RestrictionSnapshot(rules, quotas, prefs.getLong(KEY_GENERATION, 1L));
+    }
+
+    private static Map<String, Long> loadQuotas(SharedPreferences prefs) {
+        Map<String, Long> quotas = new HashMap<>();
+        String json = prefs.getString(KEY_QUOTAS, null);
+        if (json == null) {
+            return quotas;
+        }
+        try {
+            JSONObject object = new JSONObject(json);
+            Iterator<String> keys = object.keys();
+            while (keys.hasNext()) {
+                String pkg = keys.next();
+                quotas.put(pkg, object.getLong(pkg));
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Failed to load daily quotas: " + e.getMessage());
+        }
+        return quotas;
+    }
+
+    private static SharedPreferences getPrefs(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
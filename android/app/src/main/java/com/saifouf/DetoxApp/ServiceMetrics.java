@@ -0,0 +1,302 @@
+package com.saifouf.DetoxApp;
+
+import android.app.Application;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Debug;
+import android.os.SystemClock;
+
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Cost counters for AppBlockingService. Everything is preallocated: recording
+ * is a bucket search plus a few atomic adds, with no allocation per tick.
+ * Reported through Service.dump() and AppBlockingModule.getServiceMetrics(),
+ * which gets them from the blocker process as a Bundle.
+ */
+public class ServiceMetrics {
+    // Upper bounds in microseconds; the last bucket is open-ended
+    private static final long[] LATENCY_BOUNDS_US = {
+            50, 100, 250, 500, 1000, 2500, 5000, 10000, 25000, 50000, 100000, 250000};
+    private static final long[] COUNT_BOUNDS = {0, 1, 2, 4, 8, 16, 32, 64, 128, 256, 512};
+    private static final int MINUTES_PER_HOUR = 60;
+
+    public static class Histogram {
+        public final String name;
+        public final String unit;
+        private final long[] bounds;
+        private final AtomicLongArray buckets;
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        Histogram(String name, String unit, long[] bounds) {
+            this.name = name;
+            this.unit = unit;
+            this.bounds = bounds;
+            this.buckets = new AtomicLongArray(bounds.length + 1);
+        }
+
+        public void record(long value) {
+            int bucket = 0;
+            while (bucket < bounds.length && value > bounds[bucket]) {
+                bucket++;
+            }
+            buckets.incrementAndGet(bucket);
+            count.incrementAndGet();
+            sum.addAndGet(value);
+            long previous;
+            while (value > (previous = max.get()) && !max.compareAndSet(previous, value)) {
+                // retry
+            }
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public long getSum() {
+            return sum.get();
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+        public int getBucketCount() {
+            return buckets.length();
+        }
+
+        public long getBucket(int index) {
+            return buckets.get(index);
+        }
+
+        // Upper bound of the bucket, -1 for the open-ended last one
+        public long getBound(int index) {
+            return index < bounds.length ? bounds[index] : -1L;
+        }
+
+        // Upper bound of the bucket holding the given quantile, max for the open bucket
+        public long quantile(double q) {
+            long total = count.get();
+            if (total == 0) {
+                return 0L;
+            }
+            long target = (long) Math.ceil(total * q);
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= target) {
+                    return i < bounds.length ? Math.min(bounds[i], max.get()) : max.get();
+                }
+            }
+            return max.get();
+        }
+
+        void dump(PrintWriter writer) {
+            writer.print("  " + name + " (" + unit + "): count=" + getCount()
+                    + " mean=" + (getCount() > 0 ? getSum() / getCount() : 0)
+                    + " p50=" + quantile(0.5) + " p90=" + quantile(0.9)
+                    + " p99=" + quantile(0.99) + " max=" + getMax() + "\n    ");
+            for (int i = 0; i < buckets.length(); i++) {
+                writer.print((i < bounds.length ? "<=" + bounds[i] : ">" + bounds[bounds.length - 1])
+                        + ":" + buckets.get(i) + " ");
+            }
+            writer.println();
+        }
+    }
+
+    private static final ServiceMetrics instance = new ServiceMetrics();
+
+    public final Histogram tickDuration = new Histogram("tickDuration", "us", LATENCY_BOUNDS_US);
+    public final Histogram queryEventsLatency = new Histogram("queryEventsLatency", "us", LATENCY_BOUNDS_US);
+    public final Histogram eventsScanned = new Histogram("eventsScanned", "events", COUNT_BOUNDS);
+    public final Histogram ruleLookup = new Histogram("ruleLookup", "us", LATENCY_BOUNDS_US);
+    public final Histogram blockLatency = new Histogram("blockLatency", "us", LATENCY_BOUNDS_US);
+
+    private final AtomicLong blocks = new AtomicLong();
+    private final AtomicLong suppressedBlocks = new AtomicLong();
+    private final AtomicLong wakeups = new AtomicLong();
+    private final long createdElapsed = SystemClock.elapsedRealtime();
+    // Start-up: what started the service and when (elapsedRealtime), -1 until known
+    private volatile String startTrigger = null;
+    private volatile long triggerElapsed = -1L;
+    private volatile long firstCheckElapsed = -1L;
+    // Wakeups per elapsed minute over the last hour, written by the scheduler thread only
+    private final long[] minuteWakeups = new long[MINUTES_PER_HOUR];
+    private final long[] minuteStamps = new long[MINUTES_PER_HOUR];
+
+    public static ServiceMetrics get() {
+        return instance;
+    }
+
+    private ServiceMetrics() {
+    }
+
+    // Called once per scheduler tick
+    public void onWakeup() {
+        wakeups.incrementAndGet();
+        long minute = SystemClock.elapsedRealtime() / 60000;
+        int slot = (int) (minute % MINUTES_PER_HOUR);
+        if (minuteStamps[slot] != minute) {
+            minuteStamps[slot] = minute;
+            minuteWakeups[slot] = 0;
+        }
+        minuteWakeups[slot]++;
+    }
+
+    // Only the first start request of the process counts; later ones find the service running
+    public synchronized void onStartRequested(String trigger, long elapsed) {
+        if (startTrigger == null) {
+            startTrigger = trigger;
+            triggerElapsed = elapsed;
+        }
+    }
+
+    public void onFirstCheck() {
+        firstCheckElapsed = SystemClock.elapsedRealtime();
+    }
+
+    public String getStartTrigger() {
+        return startTrigger;
+    }
+
+    // Start request (boot broadcast, app call, process start for a sticky restart) to the
+    // first completed check; -1 until both happened
+    public long getTriggerToFirstCheckMs() {
+        long trigger = triggerElapsed;
+        long firstCheck = firstCheckElapsed;
+        return trigger >= 0 && firstCheck >= 0 ? Math.max(0, firstCheck - trigger) : -1L;
+    }
+
+    public long getCreateToFirstCheckMs() {
+        long firstCheck = firstCheckElapsed;
+        return firstCheck >= 0 ? firstCheck - createdElapsed : -1L;
+    }
+
+    // elapsedRealtime counts from boot, so this is the device boot to first check time
+    public long getFirstCheckElapsedMs() {
+        return firstCheckElapsed;
+    }
+
+    public void onBlocked() {
+        blocks.incrementAndGet();
+    }
+
+    public void onBlockSuppressed() {
+        suppressedBlocks.incrementAndGet();
+    }
+
+    public long getBlocks() {
+        return blocks.get();
+    }
+
+    public long getSuppressedBlocks() {
+        return suppressedBlocks.get();
+    }
+
+    public long getWakeups() {
+        return wakeups.get();
+    }
+
+    // Ticks in the last 60 minutes; slots are read without a lock, so this is approximate
+    public long getWakeupsLastHour() {
+        long currentMinute = SystemClock.elapsedRealtime() / 60000;
+        long total = 0;
+        for (int i = 0; i < MINUTES_PER_HOUR; i++) {
+            if (currentMinute - minuteStamps[i] < MINUTES_PER_HOUR) {
+                total += minuteWakeups[i];
+            }
+        }
+        return total;
+    }
+
+    public long getUptimeMs() {
+        return SystemClock.elapsedRealtime() - createdElapsed;
+    }
+
+    public Histogram[] histograms() {
+        return new Histogram[]{tickDuration, queryEventsLatency, eventsScanned, ruleLookup, blockLatency};
+    }
+
+    // Resident memory of the calling process in KB: total PSS, private dirty, Java and native heap
+    private static long[] readMemoryKb() {
+        Debug.MemoryInfo info = new Debug.MemoryInfo();
+        Debug.getMemoryInfo(info);
+        return new long[]{info.getTotalPss(), info.getTotalPrivateDirty(),
+                parseKb(info.getMemoryStat("summary.java-heap")), parseKb(info.getMemoryStat("summary.native-heap"))};
+    }
+
+    private static long parseKb(String value) {
+        try {
+            return value != null ? Long.parseLong(value) : -1L;
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    // Same shape as getServiceMetrics() resolves; arrays are double[] so Arguments.fromBundle maps them
+    public Bundle toBundle() {
+        Bundle result = new Bundle();
+        result.putDouble("uptimeMs", getUptimeMs());
+        result.putDouble("wakeups", getWakeups());
+        result.putDouble("wakeupsLastHour", getWakeupsLastHour());
+        result.putDouble("blocks", getBlocks());
+        result.putDouble("suppressedBlocks", getSuppressedBlocks());
+        Bundle startup = new Bundle();
+        startup.putString("trigger", getStartTrigger());
+        startup.putDouble("triggerToFirstCheckMs", getTriggerToFirstCheckMs());
+        startup.putDouble("createToFirstCheckMs", getCreateToFirstCheckMs());
+        startup.putDouble("bootToFirstCheckMs", getFirstCheckElapsedMs());
+        result.putBundle("startup", startup);
+        long[] memoryKb = readMemoryKb();
+        Bundle memory = new Bundle();
+        memory.putString("process", Build.VERSION.SDK_INT >= Build.VERSION_CODES.P ? Application.getProcessName() : null);
+        memory.putDouble("pssKb", memoryKb[0]);
+        memory.putDouble("privateDirtyKb", memoryKb[1]);
+        memory.putDouble("javaHeapKb", memoryKb[2]);
+        memory.putDouble("nativeHeapKb", memoryKb[3]);
+        result.putBundle("memory", memory);
+        Bundle histogramMap = new Bundle();
+        for (Histogram histogram : histograms()) {
+            Bundle entry = new Bundle();
+            entry.putString("unit", histogram.unit);
+            entry.putDouble("count", histogram.getCount());
+            entry.putDouble("sum", histogram.getSum());
+            entry.putDouble("max", histogram.getMax());
+            entry.putDouble("p50", histogram.quantile(0.5));
+            entry.putDouble("p90", histogram.quantile(0.9));
+            entry.putDouble("p99", histogram.quantile(0.99));
+            double[] bounds = new double[histogram.getBucketCount()];
+            double[] buckets = new double[histogram.getBucketCount()];
+            for (int i = 0; i < bounds.length; i++) {
+                bounds[i] = histogram.getBound(i);
+                buckets[i] = histogram.getBucket(i);
+            }
+            entry.putDoubleArray("bounds", bounds);
+            entry.putDoubleArray("buckets", buckets);
+            histogramMap.putBundle(histogram.name, entry);
+        }
+        result.putBundle("histograms", histogramMap);
+        return result;
+    }
+
+    public void dump(PrintWriter writer) {
+        long uptimeMs = getUptimeMs();
+        writer.println("AppBlockingService metrics (uptime " + uptimeMs / 1000 + " s)");
+        writer.println("  wakeups=" + getWakeups() + " lastHour=" + getWakeupsLastHour()
+                + " perHourAvg=" + (uptimeMs > 0 ? getWakeups() * 3600000L / uptimeMs : 0));
+        writer.println("  blocks=" + getBlocks() + " suppressedByCooldown=" + getSuppressedBlocks());
+        writer.println("  startTrigger=" + getStartTrigger() + " triggerToFirstCheckMs=" + getTriggerToFirstCheckMs()
+                + " createToFirstCheckMs=" + getCreateToFirstCheckMs()
+                + " bootToFirstCheckMs=" + getFirstCheckElapsedMs());
+        long[] memoryKb = readMemoryKb();
+        writer.println("  pssKb=" + memoryKb[0] + " privateDirtyKb=" + memoryKb[1]
+                + " javaHeapKb=" + memoryKb[2] + " nativeHeapKb=" + memoryKb[3]);
+        for (Histogram histogram : histograms()) {
+            histogram.dump(writer);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.saifouf.DetoxApp;
+
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Flight recorder for the monitoring path. Records are fixed-size slots in
+ * preallocated parallel arrays used as a ring, so tracing stores a few
+ * primitives and a reference to a package name that already exists; nothing
+ * is formatted or allocated until dump(). Gated by a runtime level.
+ */
+public final class Tracer {
+    public static final int LEVEL_OFF = 0;
+    // Foreground changes, blocks, scheduler state
+    public static final int LEVEL_BASIC = 1;
+    // Adds one record per tick
+    public static final int LEVEL_VERBOSE = 2;
+    // Level survives restarts so tracing can be turned up before reproducing an issue
+    static final String PREFS_NAME = "DetoxAppPrefs";
+    static final String KEY_LEVEL = "trace_level";
+
+    public static final int TICK = 1;
+    public static final int FOREGROUND = 2;
+    public static final int BLOCK = 3;
+    public static final int BLOCK_SUPPRESSED = 4;
+    public static final int BLOCK_SHOWN = 5;
+    public static final int KILL_FAILED = 6;
+    public static final int QUERY_FAILED = 7;
+    public static final int RULES_APPLIED = 8;
+    public static final int SCREEN_OFF = 9;
+    public static final int SCREEN_ON = 10;
+    public static final int SERVICE_START = 11;
+    public static final int SERVICE_STOP = 12;
+    public static final int DETECTOR = 13;
+    public static final int SLEEP = 14;
+
+    private static final String[] TYPE_NAMES = {
+            "?", "tick", "foreground", "block", "block_suppressed", "block_shown", "kill_failed",
+            "query_failed", "rules_applied", "screen_off", "screen_on", "service_start", "service_stop",
+            "detector", "sleep"
+    };
+
+    // Power of two; at a few records per second this covers well over the last few minutes
+    private static final int CAPACITY = 8192;
+    private static final int MASK = CAPACITY - 1;
+
+    private static final Tracer instance = new Tracer();
+
+    private final long[] times = new long[CAPACITY];
+    private final int[] types = new int[CAPACITY];
+    private final String[] packages = new String[CAPACITY];
+    private final long[] args0 = new long[CAPACITY];
+    private final long[] args1 = new long[CAPACITY];
+    private final AtomicLong next = new AtomicLong();
+    private volatile int level = LEVEL_BASIC;
+
+    public static Tracer get() {
+        return instance;
+    }
+
+    private Tracer() {
+    }
+
+    public boolean isEnabled(int minLevel) {
+        return level >= minLevel;
+    }
+
+    public void setLevel(int level) {
+        this.level = Math.max(LEVEL_OFF, Math.min(LEVEL_VERBOSE, level));
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public void trace(int minLevel, int type, String packageName, long arg0, long arg1) {
+        if (level < minLevel) {
+            return;
+        }
+        int slot = (int) (next.getAndIncrement() & MASK);
+        times[slot] = System.currentTimeMillis();
+        types[slot] = type;
+        packages[slot] = packageName;
+        args0[slot] = arg0;
+        args1[slot] = arg1;
+    }
+
+    // Oldest first. Writers are not stopped, so a record being overwritten may print torn
+    public void dump(PrintWriter writer) {
+        long end = next.get();
+        long start = Math.max(0, end - CAPACITY);
+        SimpleDateFormat format = new SimpleDateFormat("MM-dd HH:mm:ss.SSS", Locale.US);
+        Date date = new Date();
+        writer.println("Trace (level " + level + ", " + (end - start) + " of " + end + " records)");
+        for (long i = start; i < end; i++) {
+            int slot = (int) (i & MASK);
+            date.setTime(times[slot]);
+            int type = types[slot];
+            writer.print("  " + format.format(date) + " "
+                    + (type > 0 && type < TYPE_NAMES.length ? TYPE_NAMES[type] : "?"));
+            if (packages[slot] != null) {
+                writer.print(" " + packages[slot]);
+            }
+            writer.println(" " + describeArgs(type, args0[slot], args1[slot]));
+        }
+    }
+
+    private static String describeArgs(int type, long arg0, long arg1) {
+        switch (type) {
+            case TICK:
+                return "scanned=" + arg0 + " us=" + arg1;
+            case BLOCK:
+            case BLOCK_SUPPRESSED:
+                return "rule=" + arg0;
+            case BLOCK_SHOWN:
+                return "latencyUs=" + arg0 + " overlay=" + (arg1 != 0);
+            case RULES_APPLIED:
+                return "generation=" + arg0;
+            case SLEEP:
+                return "forMs=" + arg0;
+            case DETECTOR:
+                return "engine=" + (arg0 == ForegroundDetectors.ENGINE_ACCESSIBILITY ? "accessibility" : "usage_events");
+            default:
+                return "";
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.saifouf.DetoxApp;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.saifouf.detox.core.TransitionListener;
+import com.saifouf.detox.core.UsageSessions;
+import com.saifouf.detox.core.UsageSource;
+import com.saifouf.detox.core.WeekSchedule;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-package foreground time for the current local day, fed incrementally by
+ * the MOVE_TO_FOREGROUND / MOVE_TO_BACKGROUND transitions the detector already
+ * walks. Totals roll over at midnight and are persisted in a small binary file.
+ */
+public class UsageAccountant implements TransitionListener, UsageSource {
+    private static final String TAG = "UsageAccountant";
+    private static final String FILE_NAME = "usage_today.bin";
+    private static final int FILE_VERSION = 1;
+    private static final long SAVE_INTERVAL_MS = 60 * 1000;
+
+    private static UsageAccountant instance;
+
+    // Held for a whole save so two writers never share the .tmp file
+    private final Object saveLock = new Object();
+
+    private final File file;
+    // Guarded by this. long[1] cells so updates don't box
+    private final Map<String, long[]> totals = new HashMap<>();
+    private long dayStart;
+    private final UsageSessions sessions = new UsageSessions(new UsageSessions.Sink() {
+        @Override
+        public void count(String packageName, long from, long to, int sign) {
+            add(packageName, from, to, sign);
+        }
+    });
+    private boolean dirty = false;
+    private long lastSave = 0L;
+
+    public static synchronized UsageAccountant get(Context context) {
+        if (instance == null) {
+            instance = new UsageAccountant(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private UsageAccountant(Context context) {
+        file = new File(context.getFilesDir(), FILE_NAME);
+        dayStart = WeekSchedule.startOfDay(System.currentTimeMillis());
+        load();
+    }
+
+    @Override
+    public synchronized void onTransition(String packageName, boolean foreground, long timestamp) {
+        rollOver(timestamp);
+        sessions.onTransition(packageName, foreground, timestamp);
+    }
+
+    @Override
+    public synchronized void onTrackingLost(long timestamp) {
+        sessions.onTrackingLost(timestamp);
+    }
+
+    // Foreground time today, including the session still running
+    @Override
+    public synchronized long getUsedToday(String packageName, long now) {
+        rollOver(now);
+        long[] cell = totals.get(packageName);
+        long used = cell != null ? cell[0] : 0L;
+        if (packageName.equals(sessions.getOpenPackage())) {
+            used += Math.max(0L, now - Math.max(sessions.getCountedTo(), dayStart));
+        }
+        return used;
+    }
+
+    public synchronized Map<String, Long> snapshot(long now) {
+        rollOver(now);
+        Map<String, Long> result = new HashMap<>();
+        for (Map.Entry<String, long[]> entry : totals.entrySet()) {
+            result.put(entry.getKey(), entry.getValue()[0]);
+        }
+        String openPackage = sessions.getOpenPackage();
+        long from = openPackage != null ? Math.max(sessions.getCountedTo(), dayStart) : now;
+        if (now > from) {
+            Long used = result.get(openPackage);
+            result.put(openPackage, (used != null ? used : 0L) + now - from);
+        }
+        return result;
+    }
+
+    // Forgets an uninstalled package's usage today
+    public void removePackage(String packageName, long now) {
+        synchronized (this) {
+            sessions.remove(packageName);
+            if (totals.remove(packageName) == null) {
+                return;
+            }
+        }
+        save(now);
+    }
+
+    // Today's totals as last saved by the blocking service, read from disk on every call, for
+    // the app process while the service is not running. get() is only current in the process
+    // that feeds it. A session open at the last save counts up to that save
+    public static Map<String, Long> readSaved(Context context, long now) throws IOException {
+        File file = new File(context.getFilesDir(), FILE_NAME);
+        Map<String, Long> result = new HashMap<>();
+        Saved saved = read(file, WeekSchedule.startOfDay(now));
+        if (saved == null) {
+            return result;
+        }
+        for (Map.Entry<String, long[]> entry : saved.totals.entrySet()) {
+            result.put(entry.getKey(), entry.getValue()[0]);
+        }
+        long savedAt = Math.min(file.lastModified(), now);
+        long from = Math.max(saved.openSince, WeekSchedule.startOfDay(now));
+        if (!saved.openPackage.isEmpty() && savedAt > from) {
+            Long used = result.get(saved.openPackage);
+            result.put(saved.openPackage, (used != null ? used : 0L) + savedAt - from);
+        }
+        return result;
+    }
+
+    // Called from the monitoring tick; writes at most once per SAVE_INTERVAL_MS
+    public void maybeSave(long now) {
+        synchronized (this) {
+            if (!dirty || now - lastSave < SAVE_INTERVAL_MS) {
+                return;
+            }
+        }
+        save(now);
+    }
+
+    public void save(long now) {
+        synchronized (saveLock) {
+            Map<String, long[]> copy;
+            long day;
+            long counted;
+            String openPackage;
+            long openSince;
+            synchronized (this) {
+                counted = sessions.getCountedUpTo();
+                openPackage = sessions.getOpenPackage() != null ? sessions.getOpenPackage() : "";
+                openSince = sessions.getCountedTo();
+                copy = new HashMap<>(totals.size());
+                for (Map.Entry<String, long[]> entry : totals.entrySet()) {
+                    copy.put(entry.getKey(), new long[] {entry.getValue()[0]});
+                }
+                day = dayStart;
+                dirty = false;
+                lastSave = now;
+            }
+            File tmp = new File(file.getPath() + ".tmp");
+            try {
+                DataOutputStream out = new DataOutputStream(new FileOutputStream(tmp));
+                try {
+                    out.writeInt(FILE_VERSION);
+                    out.writeLong(day);
+                    out.writeLong(counted);
+                    out.writeUTF(openPackage);
+                    out.writeLong(openSince);
+                    out.writeInt(copy.size());
+                    for (Map.Entry<String, long[]> entry : copy.entrySet()) {
+                        out.writeUTF(entry.getKey());
+                        out.writeLong(entry.getValue()[0]);
+                    }
+                } finally {
+                    out.close();
+                }
+                if (!tmp.renameTo(file)) {
+                    throw new IOException("Rename failed");
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to save usage totals: " + e.getMessage());
+                synchronized (this) {
+                    dirty = true;
+                }
+            }
+        }
+    }
+
+    // Called with the lock held. Time before midnight belongs to the previous day and is dropped
+    private void add(String packageName, long from, long to, int sign) {
+        from = Math.max(from, dayStart);
+        if (to > from) {
+            long[] cell = totals.get(packageName);
+            if (cell == null) {
+                cell = new long[1];
+                totals.put(packageName, cell);
+            }
+            cell[0] = Math.max(0L, cell[0] + sign * (to - from));
+            dirty = true;
+        }
+    }
+
+    // Called with the lock held
+    private void rollOver(long now) {
+        long today = WeekSchedule.startOfDay(now);
+        if (today <= dayStart) {
+            return;
+        }
+        totals.clear();
+        dayStart = today;
+        dirty = true;
+    }
+
+    private void load() {
+        try {
+            Saved saved = read(file, dayStart);
+            if (saved == null) {
+                return;
+            }
+            sessions.restore(saved.countedUpTo, !saved.openPackage.isEmpty() ? saved.openPackage : null,
+                    saved.openSince);
+            totals.putAll(saved.totals);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to load usage totals: " + e.getMessage());
+            totals.clear();
+        }
+    }
+
+    // Null when there is no file for the day
+    private static Saved read(File file, long dayStart) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            if (in.readInt() != FILE_VERSION || in.readLong() != dayStart) {
+                return null;
+            }
+            Saved saved = new Saved();
+            saved.countedUpTo = in.readLong();
+            saved.openPackage = in.readUTF();
+            saved.openSince = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String packageName = in.readUTF();
+                saved.totals.put(packageName, new long[] {in.readLong()});
+            }
+            return saved;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static final class Saved {
+        long countedUpTo;
+        String openPackage;
+        long openSince;
+        final Map<String, long[]> totals = new HashMap<>();
+    }
+}
@@ -0,0 +1,57 @@
+package com.saifouf.DetoxApp;
+
+import android.app.usage.UsageEvents;
+import android.app.usage.UsageStats;
+import android.app.usage.UsageStatsManager;
+import android.os.SystemClock;
+
+import com.saifouf.detox.core.EventSource;
+
+import java.util.List;
+
+/**
+ * EventSource over UsageStatsManager for the core ForegroundTracker. Reuses one
+ * Event instance, so walking the stream allocates nothing per event.
+ */
+public class UsageEventsSource implements EventSource {
+    private final UsageStatsManager usageStatsManager;
+    private final UsageEvents.Event event = new UsageEvents.Event();
+    private final ServiceMetrics metrics = ServiceMetrics.get();
+
+    public UsageEventsSource(UsageStatsManager usageStatsManager) {
+        this.usageStatsManager = usageStatsManager;
+    }
+
+    @Override
+    public void query(long begin, long end, Visitor visitor) {
+        long queryStartNanos = SystemClock.elapsedRealtimeNanos();
+        int scanned = 0;
+        UsageEvents events = usageStatsManager.queryEvents(begin, end);
+        while (events.hasNextEvent()) {
+            events.getNextEvent(event);
+            scanned++;
+            visitor.onEvent(event.getPackageName(), event.getEventType(), event.getTimeStamp());
+        }
+        metrics.queryEventsLatency.record((SystemClock.elapsedRealtimeNanos() - queryStartNanos) / 1000);
+        metrics.eventsScanned.record(scanned);
+    }
+
+    @Override
+    public String mostRecentlyUsed(long begin, long end) {
+        List<UsageStats> stats = usageStatsManager.queryUsageStats(UsageStatsManager.INTERVAL_DAILY, begin, end);
+        if (stats == null) {
+            return null;
+        }
+        // Single pass for the most recent entry, no need to sort the whole list
+        String packageName = null;
+        long newest = 0L;
+        for (int i = 0; i < stats.size(); i++) {
+            UsageStats usageStats = stats.get(i);
+            if (usageStats.getLastTimeUsed() > newest) {
+                newest = usageStats.getLastTimeUsed();
+                packageName = usageStats.getPackageName();
+            }
+        }
+        return packageName;
+    }
+}
@@ -0,0 +1,512 @@
+package com.saifouf.DetoxApp;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.saifouf.detox.core.TransitionListener;
+import com.saifouf.detox.core.UsageSessions;
+import com.saifouf.detox.core.WeekSchedule;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-package foreground time rolled up by hour and by local day, kept for
+ * RETENTION_DAYS. Fed by the same transitions as UsageAccountant in the
+ * blocker process, which is the only writer. Each day is one columnar file
+ * (package names, a daily column, then one column per hour) so the app
+ * process answers range queries straight from disk, reading only the columns
+ * it needs. Values are milliseconds.
+ */
+public class UsageHistory implements TransitionListener {
+    private static final String TAG = "UsageHistory";
+    private static final String DIR_NAME = "usage_history";
+    private static final String STATE_NAME = "state.bin";
+    private static final int MAGIC = 0x55484931; // "UHI1"
+    private static final int VERSION = 1;
+    private static final long HOUR_MS = 60 * 60 * 1000;
+    // Elapsed hours since local midnight; a day has 25 when the clocks go back
+    static final int HOUR_SLOTS = 25;
+    private static final int RETENTION_DAYS = 60;
+    private static final long SAVE_INTERVAL_MS = 60 * 1000;
+
+    private static UsageHistory instance;
+
+    private final File dir;
+    // Guarded by this. Days touched since the last save, plus today
+    private final Map<Long, Day> days = new HashMap<>();
+    // The open session is not restored after a restart: its end is unknown and may span a reboot
+    private final UsageSessions sessions = new UsageSessions(new UsageSessions.Sink() {
+        @Override
+        public void count(String packageName, long from, long to, int sign) {
+            record(packageName, from, to, sign);
+        }
+    });
+    private long lastSave = 0L;
+    private long savedCountedUpTo = 0L;
+    private long prunedDay = 0L;
+
+    // One local day in columns: packages[i] owns daily[i] and hourly[slot][i]
+    private static final class Day {
+        final long start;
+        final long end;
+        final Map<String, Integer> index = new HashMap<>();
+        String[] packages = new String[16];
+        int[] daily = new int[16];
+        int[][] hourly = new int[HOUR_SLOTS][16];
+        int count = 0;
+        boolean dirty = false;
+
+        Day(long start) {
+            this.start = start;
+            this.end = nextDayStart(start);
+        }
+
+        // Copy without the package, null when the day has no row for it
+        Day without(String packageName) {
+            Integer removed = index.get(packageName);
+            if (removed == null) {
+                return null;
+            }
+            Day copy = new Day(start);
+            for (int row = 0; row < count; row++) {
+                if (row == removed) {
+                    continue;
+                }
+                for (int slot = 0; slot < HOUR_SLOTS; slot++) {
+                    if (hourly[slot][row] > 0) {
+                        copy.add(packages[row], slot, hourly[slot][row]);
+                    }
+                }
+            }
+            return copy;
+        }
+
+        void add(String packageName, int slot, long deltaMs) {
+            Integer row = index.get(packageName);
+            if (row == null) {
+                if (count == packages.length) {
+                    int capacity = count * 2;
+                    packages = Arrays.copyOf(packages, capacity);
+                    daily = Arrays.copyOf(daily, capacity);
+                    for (int i = 0; i < HOUR_SLOTS; i++) {
+                        hourly[i] = Arrays.copyOf(hourly[i], capacity);
+                    }
+                }
+                row = count++;
+                packages[row] = packageName;
+                index.put(packageName, row);
+            }
+            daily[row] = (int) Math.max(0, daily[row] + deltaMs);
+            hourly[slot][row] = (int) Math.max(0, hourly[slot][row] + deltaMs);
+            dirty = true;
+        }
+    }
+
+    // Rollups for a range: values[p * bucketStarts.length + b] is package p in bucket b
+    public static final class Result {
+        // Most used first
+        public final String[] packages;
+        public final long[] bucketStarts;
+        public final int[] values;
+
+        Result(String[] packages, long[] bucketStarts, int[] values) {
+            this.packages = packages;
+            this.bucketStarts = bucketStarts;
+            this.values = values;
+        }
+    }
+
+    public static synchronized UsageHistory get(Context context) {
+        if (instance == null) {
+            instance = new UsageHistory(getDir(context));
+        }
+        return instance;
+    }
+
+    private UsageHistory(File dir) {
+        this.dir = dir;
+        loadState();
+    }
+
+    @Override
+    public synchronized void onTransition(String packageName, boolean foreground, long timestamp) {
+        sessions.onTransition(packageName, foreground, timestamp);
+    }
+
+    @Override
+    public synchronized void onTrackingLost(long timestamp) {
+        sessions.onTrackingLost(timestamp);
+    }
+
+    // Called from the monitoring tick; writes at most once per SAVE_INTERVAL_MS
+    public synchronized void maybeSave(long now) {
+        if (now - lastSave >= SAVE_INTERVAL_MS) {
+            save(now);
+        }
+    }
+
+    // Writes the dirty days, counting the open session up to now so queries see it
+    public synchronized void save(long now) {
+        lastSave = now;
+        if (!dir.exists() && !dir.mkdirs()) {
+            Log.e(TAG, "Unable to create " + dir);
+            return;
+        }
+        sessions.countOpen(now);
+        long today = WeekSchedule.startOfDay(now);
+        Iterator<Day> iterator = days.values().iterator();
+        while (iterator.hasNext()) {
+            Day day = iterator.next();
+            if (day.dirty) {
+                try {
+                    writeDay(day);
+                    day.dirty = false;
+                } catch (IOException e) {
+                    Log.e(TAG, "Failed to save usage history: " + e.getMessage());
+                    continue;
+                }
+            }
+            if (day.start != today) {
+                iterator.remove();
+            }
+        }
+        if (sessions.getCountedUpTo() != savedCountedUpTo) {
+            saveState();
+        }
+        if (today != prunedDay) {
+            prune(today);
+            prunedDay = today;
+        }
+    }
+
+    // Removes an uninstalled package from every stored day
+    public synchronized void removePackage(String packageName) {
+        sessions.remove(packageName);
+        String[] names = dir.list();
+        if (names == null) {
+            return;
+        }
+        for (String name : names) {
+            if (!name.endsWith(".bin") || name.equals(STATE_NAME)) {
+                continue;
+            }
+            long start;
+            try {
+                start = Long.parseLong(name.substring(0, name.length() - 4));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            Day day = days.get(start);
+            Day pruned = (day != null ? day : readDay(new File(dir, name), start)).without(packageName);
+            if (pruned == null) {
+                continue;
+            }
+            try {
+                writeDay(pruned);
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to prune usage history: " + e.getMessage());
+                continue;
+            }
+            if (day != null) {
+                days.put(start, pruned);
+            }
+        }
+    }
+
+    // Called with the lock held. Splits [from, to) at hour and day boundaries
+    private void record(String packageName, long from, long to, int sign) {
+        long t = from;
+        while (t < to) {
+            Day day = getDay(WeekSchedule.startOfDay(t));
+            int slot = (int) Math.min((t - day.start) / HOUR_MS, HOUR_SLOTS - 1);
+            long slotEnd = slot == HOUR_SLOTS - 1 ? day.end : Math.min(day.start + (slot + 1) * HOUR_MS, day.end);
+            long end = Math.min(to, slotEnd);
+            day.add(packageName, slot, sign * (end - t));
+            t = end;
+        }
+    }
+
+    // Called with the lock held
+    private Day getDay(long start) {
+        Day day = days.get(start);
+        if (day == null) {
+            day = readDay(new File(dir, fileName(start)), start);
+            days.put(start, day);
+        }
+        return day;
+    }
+
+    // Called with the lock held
+    private void writeDay(Day day) throws IOException {
+        File file = new File(dir, fileName(day.start));
+        File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(day.start);
+            out.writeInt(day.count);
+            for (int i = 0; i < day.count; i++) {
+                out.writeUTF(day.packages[i]);
+            }
+            for (int i = 0; i < day.count; i++) {
+                out.writeInt(day.daily[i]);
+            }
+            for (int slot = 0; slot < HOUR_SLOTS; slot++) {
+                int[] column = day.hourly[slot];
+                for (int i = 0; i < day.count; i++) {
+                    out.writeInt(column[i]);
+                }
+            }
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Rename failed");
+        }
+    }
+
+    private static Day readDay(File file, long start) {
+        Day day = new Day(start);
+        if (!file.exists()) {
+            return day;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                String[] packages = readHeader(in, start);
+                if (packages == null) {
+                    return day;
+                }
+                // The daily column is the sum of the hourly ones, which add() rebuilds
+                readColumn(in, packages.length);
+                for (int slot = 0; slot < HOUR_SLOTS; slot++) {
+                    int[] column = readColumn(in, packages.length);
+                    for (int i = 0; i < packages.length; i++) {
+                        if (column[i] > 0) {
+                            day.add(packages[i], slot, column[i]);
+                        }
+                    }
+                }
+                day.dirty = false;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to read usage history: " + e.getMessage());
+            return new Day(start);
+        }
+        return day;
+    }
+
+    // Package names of a day file, null when it is not a file for that day
+    private static String[] readHeader(DataInputStream in, long start) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != start) {
+            return null;
+        }
+        int count = in.readInt();
+        String[] packages = new String[count];
+        for (int i = 0; i < count; i++) {
+            packages[i] = in.readUTF();
+        }
+        return packages;
+    }
+
+    private static int[] readColumn(DataInputStream in, int count) throws IOException {
+        int[] column = new int[count];
+        for (int i = 0; i < count; i++) {
+            column[i] = in.readInt();
+        }
+        return column;
+    }
+
+    // Rollups of [fromMs, toMs), by hour or by whole local day. Reads the files, so it works in
+    // any process; the blocker saves at least once a minute while it runs
+    public static Result query(Context context, long fromMs, long toMs, boolean hourly) {
+        List<Long> dayStarts = new ArrayList<>();
+        for (long day = WeekSchedule.startOfDay(fromMs); day < toMs; day = nextDayStart(day)) {
+            dayStarts.add(day);
+        }
+        // Buckets of every day in range, then hours outside [fromMs, toMs) trimmed
+        int[] firstBucketOfDay = new int[dayStarts.size()];
+        int[] slotsOfDay = new int[dayStarts.size()];
+        List<Long> allStarts = new ArrayList<>();
+        for (int d = 0; d < dayStarts.size(); d++) {
+            long day = dayStarts.get(d);
+            firstBucketOfDay[d] = allStarts.size();
+            slotsOfDay[d] = hourly ? (int) Math.min(HOUR_SLOTS, (nextDayStart(day) - day + HOUR_MS - 1) / HOUR_MS) : 1;
+            for (int slot = 0; slot < slotsOfDay[d]; slot++) {
+                allStarts.add(day + slot * HOUR_MS);
+            }
+        }
+        int first = 0;
+        int last = allStarts.size();
+        if (hourly) {
+            while (first < last && allStarts.get(first) + HOUR_MS <= fromMs) {
+                first++;
+            }
+            while (last > first && allStarts.get(last - 1) >= toMs) {
+                last--;
+            }
+        }
+        int bucketCount = last - first;
+        long[] bucketStarts = new long[bucketCount];
+        for (int b = 0; b < bucketCount; b++) {
+            bucketStarts[b] = allStarts.get(first + b);
+        }
+
+        File dir = getDir(context);
+        Map<String, int[]> rows = new HashMap<>();
+        for (int d = 0; d < dayStarts.size(); d++) {
+            File file = new File(dir, fileName(dayStarts.get(d)));
+            if (!file.exists()) {
+                continue;
+            }
+            try {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+                try {
+                    String[] names = readHeader(in, dayStarts.get(d));
+                    if (names == null) {
+                        continue;
+                    }
+                    int[] daily = readColumn(in, names.length);
+                    for (int slot = 0; slot < slotsOfDay[d]; slot++) {
+                        int bucket = firstBucketOfDay[d] + slot - first;
+                        // Hourly columns follow the daily one; read them in order even when skipped
+                        int[] column = hourly ? readColumn(in, names.length) : daily;
+                        if (bucket < 0 || bucket >= bucketCount) {
+                            continue;
+                        }
+                        for (int i = 0; i < names.length; i++) {
+                            if (column[i] == 0) {
+                                continue;
+                            }
+                            int[] row = rows.get(names[i]);
+                            if (row == null) {
+                                row = new int[bucketCount];
+                                rows.put(names[i], row);
+                            }
+                            row[bucket] = column[i];
+                        }
+                    }
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to read usage history: " + e.getMessage());
+            }
+        }
+
+        final Map<String, Long> totals = new HashMap<>();
+        for (Map.Entry<String, int[]> entry : rows.entrySet()) {
+            long total = 0;
+            for (int value : entry.getValue()) {
+                total += value;
+            }
+            totals.put(entry.getKey(), total);
+        }
+        String[] packages = rows.keySet().toArray(new String[0]);
+        Arrays.sort(packages, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                return Long.compare(totals.get(b), totals.get(a));
+            }
+        });
+        int[] values = new int[packages.length * bucketCount];
+        for (int p = 0; p < packages.length; p++) {
+            System.arraycopy(rows.get(packages[p]), 0, values, p * bucketCount, bucketCount);
+        }
+        return new Result(packages, bucketStarts, values);
+    }
+
+    // Called with the lock held
+    private void prune(long today) {
+        String[] names = dir.list();
+        if (names == null) {
+            return;
+        }
+        long oldest = today - RETENTION_DAYS * 24 * HOUR_MS;
+        for (String name : names) {
+            if (!name.endsWith(".bin") || name.equals(STATE_NAME)) {
+                continue;
+            }
+            try {
+                long start = Long.parseLong(name.substring(0, name.length() - 4));
+                if (start < oldest && !new File(dir, name).delete()) {
+                    Log.e(TAG, "Failed to delete " + name);
+                }
+            } catch (NumberFormatException ignored) {
+                // not a day file
+            }
+        }
+    }
+
+    // Called with the lock held
+    private void saveState() {
+        File file = new File(dir, STATE_NAME);
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            DataOutputStream out = new DataOutputStream(new FileOutputStream(tmp));
+            try {
+                out.writeInt(VERSION);
+                out.writeLong(sessions.getCountedUpTo());
+            } finally {
+                out.close();
+            }
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Rename failed");
+            }
+            savedCountedUpTo = sessions.getCountedUpTo();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to save usage history state: " + e.getMessage());
+        }
+    }
+
+    private void loadState() {
+        File file = new File(dir, STATE_NAME);
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                if (in.readInt() != VERSION) {
+                    return;
+                }
+                savedCountedUpTo = in.readLong();
+                sessions.restore(savedCountedUpTo, null, 0L);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to load usage history state: " + e.getMessage());
+        }
+    }
+
+    private static File getDir(Context context) {
+        return new File(context.getApplicationContext().getFilesDir(), DIR_NAME);
+    }
+
+    private static String fileName(long dayStart) {
+        return dayStart + ".bin";
+    }
+
+    // Local midnight after dayStart; 26 h lands in the next day on 23 and 25 hour days alike
+    private static long nextDayStart(long dayStart) {
+        return WeekSchedule.startOfDay(dayStart + 26 * HOUR_MS);
+    }
+}
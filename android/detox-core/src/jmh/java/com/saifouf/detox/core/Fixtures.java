@@ -0,0 +1,75 @@
+package com.saifouf.detox.core;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+final class Fixtures {
+    private Fixtures() {
+    }
+
+    static String[] packagePool(int size) {
+        String[] packages = new String[size];
+        for (int i = 0; i < size; i++) {
+            packages[i] = "com.example.app" + i;
+        }
+        return packages;
+    }
+
+    // ruleCount scheduled packages drawn from the pool, every fourth one with a quota as well
+    static RuleTable ruleTable(String[] pool, int ruleCount, long seed) {
+        return ruleTable(pool, ruleCount, seed, false);
+    }
+
+    // With prefixes, each rule is "<package>*" instead of the exact package
+    static RuleTable ruleTable(String[] pool, int ruleCount, long seed, boolean prefixes) {
+        Random random = new Random(seed);
+        Map<String, long[]> schedules = new HashMap<>();
+        Map<String, Long> quotas = new HashMap<>();
+        for (int i = 0; i < ruleCount && i < pool.length; i++) {
+            boolean[] days = new boolean[7];
+            for (int day = 0; day < 7; day++) {
+                days[day] = random.nextBoolean();
+            }
+            int start = random.nextInt(WeekSchedule.MINUTES_PER_DAY);
+            int end = random.nextInt(WeekSchedule.MINUTES_PER_DAY);
+            schedules.put(prefixes ? pool[i] + RuleTable.WILDCARD : pool[i], WeekSchedule.compile(days, start, end));
+            if (i % 4 == 0) {
+                quotas.put(pool[i], (long) (random.nextInt(120) + 1) * 60 * 1000);
+            }
+        }
+        return new RuleTable(schedules, quotas);
+    }
+
+    // Usage that grows with the clock, so quotas trip at different times
+    static final UsageSource LINEAR_USAGE = new UsageSource() {
+        @Override
+        public long getUsedToday(String packageName, long now) {
+            return (now / 1000 + packageName.length()) % (3 * 60 * 60 * 1000);
+        }
+    };
+
+    static final class VirtualClock implements Clock {
+        long nowMs;
+        long nowNanos;
+
+        VirtualClock(long startMs) {
+            this.nowMs = startMs;
+        }
+
+        void advance(long ms) {
+            nowMs += ms;
+            nowNanos += ms * 1000000L;
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return nowMs;
+        }
+
+        @Override
+        public long nanoTime() {
+            return nowNanos;
+        }
+    }
+}
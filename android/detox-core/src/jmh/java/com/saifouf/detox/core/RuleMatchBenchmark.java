@@ -0,0 +1,57 @@
+package com.saifouf.detox.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rule lookup alone, for packages with and without rules, with exact or
+ * prefix rules. Lookups repeat, so this mostly measures memoized matches.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RuleMatchBenchmark {
+    @Param({"100", "500"})
+    public int ruleCount;
+
+    @Param({"exact", "prefix"})
+    public String ruleKind;
+
+    private RuleMatcher matcher;
+    // PackageRegistry ids, interned up front like the detectors do on ingest
+    private int[] lookups;
+    private long[] times;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        WeekSchedule.setTimeZone(TimeZone.getTimeZone("UTC"));
+        String[] pool = Fixtures.packagePool(ruleCount * 2);
+        PackageRegistry packages = new PackageRegistry();
+        matcher = new RestrictionMatcher(Fixtures.ruleTable(pool, ruleCount, 7, ruleKind.equals("prefix")),
+                Fixtures.LINEAR_USAGE, packages);
+        Random random = new Random(11);
+        lookups = new int[1024];
+        times = new long[lookups.length];
+        for (int i = 0; i < lookups.length; i++) {
+            lookups[i] = packages.intern(pool[random.nextInt(pool.length)]);
+            times[i] = 1700000000000L + (long) random.nextInt(7 * 24 * 60) * 60 * 1000;
+        }
+    }
+
+    @Benchmark
+    public int match() {
+        int i = index++ & (lookups.length - 1);
+        return matcher.match(lookups[i], times[i]);
+    }
+}
@@ -0,0 +1,87 @@
+package com.saifouf.detox.core;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Endless event stream for benchmarks: a generated period of events repeated
+ * back to back, so a virtual clock can advance forever without allocating.
+ * Mirrors the UsageEvents mix: foreground/background pairs plus other types.
+ */
+final class SyntheticEventSource implements EventSource {
+    private static final int OTHER_EVENT = 7; // USER_INTERACTION
+
+    private final long periodMs;
+    private final long[] offsets;
+    private final int[] types;
+    private final String[] packages;
+
+    SyntheticEventSource(String[] packagePool, int eventCount, long periodMs, long seed) {
+        Random random = new Random(seed);
+        this.periodMs = periodMs;
+        this.offsets = new long[eventCount];
+        this.types = new int[eventCount];
+        this.packages = new String[eventCount];
+        for (int i = 0; i < eventCount; i++) {
+            offsets[i] = (long) (random.nextDouble() * periodMs);
+        }
+        Arrays.sort(offsets);
+        String current = packagePool[0];
+        for (int i = 0; i < eventCount; i++) {
+            int roll = random.nextInt(10);
+            if (roll < 3) {
+                // App switch: background of the old app, foreground of the new one
+                types[i] = MOVE_TO_BACKGROUND;
+                packages[i] = current;
+                if (i + 1 < eventCount) {
+                    current = packagePool[random.nextInt(packagePool.length)];
+                    i++;
+                    types[i] = MOVE_TO_FOREGROUND;
+                    packages[i] = current;
+                }
+            } else {
+                types[i] = OTHER_EVENT;
+                packages[i] = current;
+            }
+        }
+    }
+
+    @Override
+    public void query(long begin, long end, Visitor visitor) {
+        if (end <= begin) {
+            return;
+        }
+        long firstCycle = Math.floorDiv(begin, periodMs);
+        long lastCycle = Math.floorDiv(end - 1, periodMs);
+        for (long cycle = firstCycle; cycle <= lastCycle; cycle++) {
+            long base = cycle * periodMs;
+            int index = lowerBound(Math.max(begin, base) - base);
+            for (; index < offsets.length; index++) {
+                long timestamp = base + offsets[index];
+                if (timestamp >= end) {
+                    break;
+                }
+                visitor.onEvent(packages[index], types[index], timestamp);
+            }
+        }
+    }
+
+    @Override
+    public String mostRecentlyUsed(long begin, long end) {
+        return null;
+    }
+
+    private int lowerBound(long offset) {
+        int low = 0;
+        int high = offsets.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (offsets[mid] < offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
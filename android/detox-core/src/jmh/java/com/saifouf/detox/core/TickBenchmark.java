@@ -0,0 +1,73 @@
+package com.saifouf.detox.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-tick cost of the full engine (detect, match, cooldown) over a synthetic
+ * usage stream. Run with the gc profiler to see allocation per tick.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TickBenchmark {
+    // Events per hour of usage stream
+    @Param({"1000", "5000"})
+    public int eventCount;
+
+    @Param({"100", "500"})
+    public int ruleCount;
+
+    // Virtual time between ticks: MonitorScheduler's fast interval, and a screen-off catch-up
+    @Param({"500", "600000"})
+    public long tickIntervalMs;
+
+    private Fixtures.VirtualClock clock;
+    private BlockingEngine engine;
+    long blocks;
+    long changes;
+
+    @Setup
+    public void setUp() {
+        WeekSchedule.setTimeZone(TimeZone.getTimeZone("UTC"));
+        String[] pool = Fixtures.packagePool(ruleCount * 2);
+        EventSource source = new SyntheticEventSource(pool, eventCount, 60 * 60 * 1000, 42);
+        PackageRegistry packages = new PackageRegistry();
+        RuleMatcher matcher = new RestrictionMatcher(Fixtures.ruleTable(pool, ruleCount, 7), Fixtures.LINEAR_USAGE,
+                packages);
+        clock = new Fixtures.VirtualClock(1700000000000L);
+        engine = new BlockingEngine(packages, new ForegroundTracker(source, packages), matcher,
+                new BlockCooldown(BlockCooldown.DEFAULT_COOLDOWN_MS), clock, new BlockingEngine.Listener() {
+                    @Override
+                    public void onForegroundChanged(String packageName, long now) {
+                        changes++;
+                    }
+
+                    @Override
+                    public void onBlock(String packageName, int rule, long now, long detectedAtNanos) {
+                        blocks++;
+                    }
+
+                    @Override
+                    public void onBlockSuppressed(String packageName, int rule, long now) {
+                    }
+                });
+        // Prime the cursor so every measured tick is incremental
+        engine.tick();
+    }
+
+    @Benchmark
+    public boolean tick() {
+        clock.advance(tickIntervalMs);
+        return engine.tick();
+    }
+}
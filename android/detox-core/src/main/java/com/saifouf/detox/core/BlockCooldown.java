@@ -0,0 +1,31 @@
+package com.saifouf.detox.core;
+
+/**
+ * Suppresses repeated blocks of the same package within the cooldown, e.g.
+ * while the HOME transition of the previous block is still in flight.
+ */
+public class BlockCooldown {
+    public static final long DEFAULT_COOLDOWN_MS = 3000;
+
+    private final long cooldownMs;
+    private int lastBlockedId = PackageRegistry.NONE;
+    private long lastBlockTimestamp = 0L;
+
+    public BlockCooldown(long cooldownMs) {
+        this.cooldownMs = cooldownMs;
+    }
+
+    // Returns true and starts a new cooldown when the package (a PackageRegistry id) may be blocked now
+    public boolean tryAcquire(int packageId, long now) {
+        if (packageId == lastBlockedId && (now - lastBlockTimestamp) < cooldownMs) {
+            return false;
+        }
+        lastBlockedId = packageId;
+        lastBlockTimestamp = now;
+        return true;
+    }
+
+    public long getCooldownMs() {
+        return cooldownMs;
+    }
+}
@@ -0,0 +1,74 @@
+package com.saifouf.detox.core;
+
+/**
+ * One monitoring tick: detect the foreground app, match it against the rules
+ * and apply the block cooldown. The detector can be swapped between ticks. Side effects (overlay, events, logs) are left
+ * to the Listener, so the same engine runs in the service and off device.
+ * Detectors, matcher and cooldown work on ids from the same PackageRegistry;
+ * names only appear in the Listener calls.
+ */
+public class BlockingEngine {
+
+    public interface Listener {
+        void onForegroundChanged(String packageName, long now);
+
+        // detectedAtNanos is Clock.nanoTime() right after detection
+        void onBlock(String packageName, int rule, long now, long detectedAtNanos);
+
+        void onBlockSuppressed(String packageName, int rule, long now);
+    }
+
+    private final PackageRegistry packages;
+    private ForegroundDetector detector;
+    private final RuleMatcher matcher;
+    private final BlockCooldown cooldown;
+    private final Clock clock;
+    private final Listener listener;
+    private int lastForegroundId = PackageRegistry.NONE;
+
+    public BlockingEngine(PackageRegistry packages, ForegroundDetector detector, RuleMatcher matcher,
+                          BlockCooldown cooldown, Clock clock, Listener listener) {
+        this.packages = packages;
+        this.detector = detector;
+        this.matcher = matcher;
+        this.cooldown = cooldown;
+        this.clock = clock;
+        this.listener = listener;
+    }
+
+    // Returns true when the foreground app changed during this tick
+    public boolean tick() {
+        long now = clock.currentTimeMillis();
+        int foregroundId = detector.detect(now);
+        long detectedAtNanos = clock.nanoTime();
+        if (foregroundId == PackageRegistry.NONE) {
+            return false;
+        }
+        boolean changed = foregroundId != lastForegroundId;
+        lastForegroundId = foregroundId;
+        if (changed) {
+            listener.onForegroundChanged(packages.nameOf(foregroundId), now);
+        }
+        int rule = matcher.match(foregroundId, now);
+        if (rule != RuleMatcher.RULE_NONE) {
+            if (cooldown.tryAcquire(foregroundId, now)) {
+                listener.onBlock(packages.nameOf(foregroundId), rule, now, detectedAtNanos);
+            } else {
+                listener.onBlockSuppressed(packages.nameOf(foregroundId), rule, now);
+            }
+        }
+        return changed;
+    }
+
+    public ForegroundDetector getDetector() {
+        return detector;
+    }
+
+    public void setDetector(ForegroundDetector detector) {
+        this.detector = detector;
+    }
+
+    public String getForegroundPackage() {
+        return lastForegroundId != PackageRegistry.NONE ? packages.nameOf(lastForegroundId) : null;
+    }
+}
@@ -0,0 +1,24 @@
+package com.saifouf.detox.core;
+
+/**
+ * Time source for the engine, so a replay can run it on a virtual clock.
+ */
+public interface Clock {
+    Clock SYSTEM = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+
+    // Wall clock, the time base of usage events and rules
+    long currentTimeMillis();
+
+    // Monotonic, used for latency measurements only
+    long nanoTime();
+}
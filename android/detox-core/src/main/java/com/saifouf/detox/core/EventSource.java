@@ -0,0 +1,20 @@
+package com.saifouf.detox.core;
+
+/**
+ * Usage event stream (UsageStatsManager on device, a trace or synthetic data
+ * off device). Event types use the UsageEvents.Event values.
+ */
+public interface EventSource {
+    int MOVE_TO_FOREGROUND = 1;
+    int MOVE_TO_BACKGROUND = 2;
+
+    interface Visitor {
+        void onEvent(String packageName, int type, long timestamp);
+    }
+
+    // Feeds every event in [begin, end) to the visitor in timestamp order
+    void query(long begin, long end, Visitor visitor) throws Exception;
+
+    // Package with the newest last-used time in [begin, end), null when unknown
+    String mostRecentlyUsed(long begin, long end);
+}
@@ -0,0 +1,14 @@
+package com.saifouf.detox.core;
+
+/**
+ * Source of the current foreground package for BlockingEngine. Either polled
+ * (ForegroundTracker over the usage event stream) or fed by window events
+ * (WindowStateDetector).
+ */
+public interface ForegroundDetector {
+    // PackageRegistry id of the current foreground package, PackageRegistry.NONE when unknown
+    int detect(long now);
+
+    // Events examined by the last detect(); 0 for push-based detectors
+    int getLastScanned();
+}
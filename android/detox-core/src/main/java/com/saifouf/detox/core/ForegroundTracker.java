@@ -0,0 +1,196 @@
+package com.saifouf.detox.core;
+
+/**
+ * Stateful foreground detection. Keeps a cursor into the usage event stream so
+ * each tick only decodes the events recorded since the previous tick.
+ */
+public class ForegroundTracker implements ForegroundDetector, EventSource.Visitor {
+    // Range queried when there is no usable cursor (first tick, clock jump, very long gap)
+    public static final long FULL_WINDOW_MS = 60 * 1000;
+    // Gaps up to this long (e.g. screen off) are caught up from the cursor so no
+    // foreground/background transition is lost for usage accounting. Longer ones
+    // end the open session at the cursor (onTrackingLost)
+    public static final long MAX_CATCH_UP_MS = 6 * 60 * 60 * 1000;
+    // Events can land slightly after their timestamp, so re-read a short tail
+    public static final long OVERLAP_MS = 2000;
+    public static final long FALLBACK_WINDOW_MS = 1000 * 1000;
+    // Transitions remembered for de-duplicating re-read ranges
+    private static final int RECENT_CAPACITY = 64;
+
+    public interface ErrorHandler {
+        void onQueryFailed(Exception e);
+    }
+
+    private final EventSource source;
+    private final PackageRegistry packages;
+    private TransitionListener transitionListener;
+    private ErrorHandler errorHandler;
+    // Newest event timestamp already handed to the listener; survives reset()
+    private long reportedUpTo = 0L;
+    // Transitions handed to the listener after lateFloor, so one that surfaces
+    // late in a re-read range is reported once without repeating its neighbours.
+    // Anything at or before lateFloor is taken as already reported
+    private long lateFloor = 0L;
+    private final long[] recentTimestamps = new long[RECENT_CAPACITY];
+    private final int[] recentIds = new int[RECENT_CAPACITY];
+    private final boolean[] recentForeground = new boolean[RECENT_CAPACITY];
+    private int recentSize = 0;
+
+    // End of the last successfully queried range, 0 when unknown
+    private long cursor = 0L;
+    // Timestamp of the event that made foregroundPackage current
+    private long foregroundSince = 0L;
+    private int foregroundId = PackageRegistry.NONE;
+
+    // Per-query state, fields so visiting allocates nothing
+    private long batchNewest;
+    private int scanned;
+
+    public ForegroundTracker(EventSource source, PackageRegistry packages) {
+        this.source = source;
+        this.packages = packages;
+    }
+
+    public void setTransitionListener(TransitionListener listener) {
+        this.transitionListener = listener;
+    }
+
+    public void setErrorHandler(ErrorHandler handler) {
+        this.errorHandler = handler;
+    }
+
+    @Override
+    public int detect(long now) {
+        long begin;
+        if (cursor == 0L || now < cursor || now - cursor > MAX_CATCH_UP_MS) {
+            if (cursor != 0L && now - cursor > MAX_CATCH_UP_MS && transitionListener != null) {
+                // The transitions since the cursor, like the app going to the background
+                // when the screen went off, are not read again
+                transitionListener.onTrackingLost(cursor);
+            }
+            // Clock went backwards or we missed too much: start over from a full window
+            reset();
+            begin = now - FULL_WINDOW_MS;
+        } else {
+            begin = cursor - OVERLAP_MS;
+        }
+        if (now < reportedUpTo) {
+            // Wall clock moved backwards past events we already reported
+            reportedUpTo = begin;
+            lateFloor = begin;
+            recentSize = 0;
+        }
+        // Re-read ranges start at most OVERLAP_MS before the newest reported event
+        dropRecent(reportedUpTo - OVERLAP_MS - 1);
+
+        batchNewest = reportedUpTo;
+        scanned = 0;
+        try {
+            source.query(begin, now, this);
+            // Only advance after the whole batch: events sharing a timestamp must all be reported
+            reportedUpTo = batchNewest;
+            cursor = now;
+        } catch (Exception e) {
+            if (errorHandler != null) {
+                errorHandler.onQueryFailed(e);
+            }
+            cursor = 0L;
+        }
+
+        if (foregroundId == PackageRegistry.NONE) {
+            // Nothing in the event window: seed the cursor state from last-time-used stats
+            String recent = source.mostRecentlyUsed(now - FALLBACK_WINDOW_MS, now);
+            if (recent != null) {
+                foregroundId = packages.intern(recent);
+            }
+        }
+        return foregroundId;
+    }
+
+    @Override
+    public void onEvent(String packageName, int type, long timestamp) {
+        scanned++;
+        if (type != EventSource.MOVE_TO_FOREGROUND && type != EventSource.MOVE_TO_BACKGROUND) {
+            return;
+        }
+        boolean foreground = type == EventSource.MOVE_TO_FOREGROUND;
+        // The only hash of the name; past here the package is an id
+        int id = packages.intern(packageName);
+        if (foreground && timestamp >= foregroundSince) {
+            foregroundSince = timestamp;
+            foregroundId = id;
+        }
+        if (transitionListener != null && timestamp > lateFloor && !isRecent(id, foreground, timestamp)) {
+            addRecent(id, foreground, timestamp);
+            // The interned name, so the listener's maps hit on identity
+            transitionListener.onTransition(packages.nameOf(id), foreground, timestamp);
+            batchNewest = Math.max(batchNewest, timestamp);
+        }
+    }
+
+    private boolean isRecent(int id, boolean foreground, long timestamp) {
+        for (int i = recentSize - 1; i >= 0; i--) {
+            if (recentTimestamps[i] == timestamp && recentIds[i] == id && recentForeground[i] == foreground) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void addRecent(int id, boolean foreground, long timestamp) {
+        if (recentSize == RECENT_CAPACITY) {
+            // Burst: give up the oldest timestamp, later copies of it are dropped as reported
+            long oldest = Long.MAX_VALUE;
+            for (int i = 0; i < recentSize; i++) {
+                oldest = Math.min(oldest, recentTimestamps[i]);
+            }
+            dropRecent(oldest);
+        }
+        recentTimestamps[recentSize] = timestamp;
+        recentIds[recentSize] = id;
+        recentForeground[recentSize] = foreground;
+        recentSize++;
+    }
+
+    // Raises lateFloor to floor and forgets the transitions at or before it
+    private void dropRecent(long floor) {
+        if (floor <= lateFloor) {
+            return;
+        }
+        lateFloor = floor;
+        int kept = 0;
+        for (int i = 0; i < recentSize; i++) {
+            if (recentTimestamps[i] > floor) {
+                recentTimestamps[kept] = recentTimestamps[i];
+                recentIds[kept] = recentIds[i];
+                recentForeground[kept] = recentForeground[i];
+                kept++;
+            }
+        }
+        recentSize = kept;
+    }
+
+    // Events seen by the last detect(), of any type
+    @Override
+    public int getLastScanned() {
+        return scanned;
+    }
+
+    public String getForegroundPackage() {
+        return foregroundId != PackageRegistry.NONE ? packages.nameOf(foregroundId) : null;
+    }
+
+    // Resumes after another detector was in charge: events up to timestamp were already
+    // accounted for, so they are not reported again
+    public void skipTo(long timestamp) {
+        reportedUpTo = Math.max(reportedUpTo, timestamp);
+        dropRecent(reportedUpTo);
+        reset();
+    }
+
+    public void reset() {
+        cursor = 0L;
+        foregroundSince = 0L;
+        foregroundId = PackageRegistry.NONE;
+    }
+}
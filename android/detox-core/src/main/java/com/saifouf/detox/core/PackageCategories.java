@@ -0,0 +1,10 @@
+package com.saifouf.detox.core;
+
+/**
+ * Category of an installed package for category rules; on Android this is
+ * ApplicationInfo.category.
+ */
+public interface PackageCategories {
+    // One of the RuleTable.CATEGORY_NAMES indices, RuleTable.CATEGORY_UNKNOWN when it has none
+    int categoryOf(String packageName);
+}
@@ -0,0 +1,94 @@
+package com.saifouf.detox.core;
+
+import java.util.Arrays;
+
+/**
+ * Interns package names into dense int ids (0, 1, 2...) so per-package state
+ * can live in arrays and bitsets indexed by id. A name is hashed once, when it
+ * enters from the event stream or a window event; past that the detection and
+ * blocking path compares and indexes ints. nameOf returns the interned
+ * instance, so maps keyed by names handed out here hit on identity. Ids are
+ * never reused. Not thread-safe; owned by the monitoring thread.
+ */
+public final class PackageRegistry {
+    public static final int NONE = -1;
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    // Open addressing, linear probing: id + 1 per slot, 0 for empty. At most half full
+    private int[] slots = new int[INITIAL_CAPACITY * 2];
+    private String[] names = new String[INITIAL_CAPACITY];
+    private int size = 0;
+
+    // Id of the package, assigned on first sight
+    public int intern(String packageName) {
+        int mask = slots.length - 1;
+        int slot = mix(packageName.hashCode()) & mask;
+        while (true) {
+            int entry = slots[slot];
+            if (entry == 0) {
+                break;
+            }
+            String name = names[entry - 1];
+            if (name == packageName || name.equals(packageName)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int id = size++;
+        if (id == names.length) {
+            names = Arrays.copyOf(names, names.length * 2);
+        }
+        names[id] = packageName;
+        slots[slot] = id + 1;
+        if (size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        return id;
+    }
+
+    // NONE when the package was never interned
+    public int find(String packageName) {
+        int mask = slots.length - 1;
+        int slot = mix(packageName.hashCode()) & mask;
+        while (true) {
+            int entry = slots[slot];
+            if (entry == 0) {
+                return NONE;
+            }
+            String name = names[entry - 1];
+            if (name == packageName || name.equals(packageName)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public String nameOf(int id) {
+        return names[id];
+    }
+
+    // Ids are [0, size())
+    public int size() {
+        return size;
+    }
+
+    private void rehash(int capacity) {
+        int[] grown = new int[capacity];
+        int mask = capacity - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = mix(names[id].hashCode()) & mask;
+            while (grown[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            grown[slot] = id + 1;
+        }
+        slots = grown;
+    }
+
+    // Package names share long prefixes, so spread the hash before masking
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
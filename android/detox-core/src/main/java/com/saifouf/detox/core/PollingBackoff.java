@@ -0,0 +1,52 @@
+package com.saifouf.detox.core;
+
+/**
+ * Tick cadence: FAST right after a foreground change, doubling up to MAX while
+ * the same app stays in front. A tick can cap the next delay, e.g. to land on
+ * the moment a quota runs out. Not thread-safe; owned by the ticking thread.
+ */
+public class PollingBackoff {
+    public static final long FAST_INTERVAL = 500;
+    public static final long BASE_INTERVAL = 1000;
+    public static final long MAX_INTERVAL = 3000;
+
+    private final long fastInterval;
+    private final long maxInterval;
+    private long interval;
+    private long nextIntervalCap = Long.MAX_VALUE;
+
+    public PollingBackoff() {
+        this(FAST_INTERVAL, BASE_INTERVAL, MAX_INTERVAL);
+    }
+
+    public PollingBackoff(long fastInterval, long baseInterval, long maxInterval) {
+        this.fastInterval = fastInterval;
+        this.maxInterval = maxInterval;
+        this.interval = baseInterval;
+    }
+
+    // Delay until the next tick, given whether this tick saw a foreground change
+    public long next(boolean changed) {
+        interval = changed ? fastInterval : Math.min(interval * 2, maxInterval);
+        long delay = Math.min(interval, nextIntervalCap);
+        nextIntervalCap = Long.MAX_VALUE;
+        return delay;
+    }
+
+    // For push-based detection: the requested cap, or Long.MAX_VALUE when no tick is needed
+    public long nextCapOnly() {
+        long delay = nextIntervalCap;
+        nextIntervalCap = Long.MAX_VALUE;
+        return delay;
+    }
+
+    // The next tick runs no later than delayMs from now
+    public void capNextInterval(long delayMs) {
+        nextIntervalCap = Math.min(nextIntervalCap, Math.max(0, delayMs));
+    }
+
+    // Restarts the fast cadence, e.g. when the screen comes back on
+    public void reset() {
+        interval = fastInterval;
+    }
+}
@@ -0,0 +1,106 @@
+package com.saifouf.detox.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Package-name prefixes compiled into a character trie stored in flat arrays.
+ * Each node holds the union of the schedules of every prefix ending at or
+ * above it, so a lookup is one walk down the package name, however many
+ * prefix rules there are. Immutable.
+ */
+final class PrefixTrie {
+    private static final int NONE = -1;
+
+    // Per node; children of a node are contiguous, sorted by label
+    private final char[] labels;
+    private final int[] firstChild;
+    private final int[] childCount;
+    // Union of the schedules of the prefixes ending here or at an ancestor, null when none
+    private final long[][] schedules;
+
+    private static final class Builder {
+        final TreeMap<Character, Builder> children = new TreeMap<>();
+        long[] schedule;
+    }
+
+    PrefixTrie(Map<String, long[]> prefixes) {
+        Builder root = new Builder();
+        int nodes = 1;
+        for (Map.Entry<String, long[]> entry : prefixes.entrySet()) {
+            Builder node = root;
+            String prefix = entry.getKey();
+            for (int i = 0; i < prefix.length(); i++) {
+                Builder child = node.children.get(prefix.charAt(i));
+                if (child == null) {
+                    child = new Builder();
+                    node.children.put(prefix.charAt(i), child);
+                    nodes++;
+                }
+                node = child;
+            }
+            node.schedule = node.schedule == null ? entry.getValue() : WeekSchedule.union(node.schedule, entry.getValue());
+        }
+
+        labels = new char[nodes];
+        firstChild = new int[nodes];
+        childCount = new int[nodes];
+        schedules = new long[nodes][];
+        // Breadth first, so each node's children land next to each other
+        List<Builder> order = new ArrayList<>(nodes);
+        order.add(root);
+        schedules[0] = root.schedule;
+        for (int index = 0; index < order.size(); index++) {
+            Builder node = order.get(index);
+            firstChild[index] = node.children.isEmpty() ? NONE : order.size();
+            childCount[index] = node.children.size();
+            for (Map.Entry<Character, Builder> child : node.children.entrySet()) {
+                int childIndex = order.size();
+                order.add(child.getValue());
+                labels[childIndex] = child.getKey();
+                long[] inherited = schedules[index];
+                long[] own = child.getValue().schedule;
+                if (own == null) {
+                    schedules[childIndex] = inherited;
+                } else {
+                    schedules[childIndex] = inherited == null ? own : WeekSchedule.union(inherited, own);
+                }
+            }
+        }
+    }
+
+    // Union of the schedules of every prefix of packageName, null when none matches. Must not be modified
+    long[] match(String packageName) {
+        int node = 0;
+        for (int i = 0; i < packageName.length(); i++) {
+            int child = findChild(node, packageName.charAt(i));
+            if (child == NONE) {
+                break;
+            }
+            node = child;
+        }
+        return schedules[node];
+    }
+
+    private int findChild(int node, char label) {
+        int low = firstChild[node];
+        if (low == NONE) {
+            return NONE;
+        }
+        int high = low + childCount[node] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char midLabel = labels[mid];
+            if (midLabel < label) {
+                low = mid + 1;
+            } else if (midLabel > label) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return NONE;
+    }
+}
@@ -0,0 +1,78 @@
+package com.saifouf.detox.core;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * RuleMatcher over a RuleTable: the schedule wins, then the daily quota is
+ * checked against the usage so far. The schedule resolved for a package
+ * (exact, prefix and category rules together) and its quota are memoized in
+ * arrays indexed by PackageRegistry id for the lifetime of the matcher, which
+ * is one rules generation, so a match after the first is two array reads and
+ * a bit test. Not thread-safe.
+ */
+public class RestrictionMatcher implements RuleMatcher {
+    private final RuleTable table;
+    private final UsageSource usage;
+    private final PackageRegistry packages;
+    private final PackageCategories categories;
+    // Indexed by package id, valid where resolved is set; grown as new ids show up
+    private final BitSet resolved = new BitSet();
+    private long[][] schedules = new long[0][];
+    // -1 when the package has no quota
+    private long[] quotas = new long[0];
+
+    public RestrictionMatcher(RuleTable table, UsageSource usage, PackageRegistry packages) {
+        this(table, usage, packages, null);
+    }
+
+    // categories may be null, in which case category rules never match
+    public RestrictionMatcher(RuleTable table, UsageSource usage, PackageRegistry packages,
+                              PackageCategories categories) {
+        this.table = table;
+        this.usage = usage;
+        this.packages = packages;
+        this.categories = categories;
+    }
+
+    @Override
+    public int match(int packageId, long now) {
+        resolve(packageId);
+        long[] schedule = schedules[packageId];
+        if (schedule != null && WeekSchedule.isSet(schedule, WeekSchedule.minuteOfWeek(now))) {
+            return RULE_SCHEDULE;
+        }
+        return remainingQuotaMs(packageId, now) == 0 ? RULE_QUOTA : RULE_NONE;
+    }
+
+    // Budget left today, 0 when used up, -1 when the package has no quota
+    public long remainingQuotaMs(int packageId, long now) {
+        resolve(packageId);
+        long quota = quotas[packageId];
+        if (quota < 0) {
+            return -1L;
+        }
+        return Math.max(0L, quota - usage.getUsedToday(packages.nameOf(packageId), now));
+    }
+
+    public RuleTable getTable() {
+        return table;
+    }
+
+    private void resolve(int packageId) {
+        if (resolved.get(packageId)) {
+            return;
+        }
+        if (packageId >= quotas.length) {
+            int capacity = Math.max(packageId + 1, Math.max(64, quotas.length * 2));
+            schedules = Arrays.copyOf(schedules, capacity);
+            quotas = Arrays.copyOf(quotas, capacity);
+        }
+        String packageName = packages.nameOf(packageId);
+        int category = categories != null && table.hasCategoryRules()
+                ? categories.categoryOf(packageName) : RuleTable.CATEGORY_UNKNOWN;
+        schedules[packageId] = table.resolveSchedule(packageName, category);
+        quotas[packageId] = table.getDailyQuotaMs(packageName);
+        resolved.set(packageId);
+    }
+}
@@ -0,0 +1,10 @@
+package com.saifouf.detox.core;
+
+public interface RuleMatcher {
+    int RULE_NONE = 0;
+    int RULE_SCHEDULE = 1;
+    int RULE_QUOTA = 2;
+
+    // Returns the RULE_* restricting the package (a PackageRegistry id) at the given time
+    int match(int packageId, long now);
+}
@@ -0,0 +1,165 @@
+package com.saifouf.detox.core;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compiled restrictions: a minute-of-week bitset per rule key (see
+ * WeekSchedule) and a daily foreground budget per quota package. Immutable.
+ *
+ * A schedule key is an exact package name, a prefix ending in '*'
+ * ("com.facebook.*") or a category ("category:game"). Prefixes are compiled
+ * into a PrefixTrie and categories into one bitset per category, so resolving
+ * a package costs one walk down its name whatever the number of rules.
+ */
+public final class RuleTable {
+    public static final RuleTable EMPTY = new RuleTable(
+            Collections.<String, long[]>emptyMap(), Collections.<String, Long>emptyMap());
+
+    public static final char WILDCARD = '*';
+    public static final String CATEGORY_PREFIX = "category:";
+    // Indexed like the Android ApplicationInfo.CATEGORY_* constants
+    public static final String[] CATEGORY_NAMES = {
+            "game", "audio", "video", "image", "social", "news", "maps", "productivity", "accessibility"
+    };
+    // ApplicationInfo.CATEGORY_UNDEFINED
+    public static final int CATEGORY_UNKNOWN = -1;
+
+    // Every non-empty schedule by key, patterns included
+    private final Map<String, long[]> schedules;
+    private final PrefixTrie prefixes;
+    // Indexed by category, null when no category rule exists
+    private final long[][] categorySchedules;
+    // Daily foreground budget per package, in milliseconds
+    private final Map<String, Long> dailyQuotas;
+    // Union of every schedule, null when there is none
+    private final long[] anyScheduled;
+
+    // Empty schedules are dropped; the arrays are not copied and must not change afterwards
+    public RuleTable(Map<String, long[]> schedules, Map<String, Long> dailyQuotas) {
+        Map<String, long[]> compiled = new HashMap<>();
+        Map<String, long[]> prefixSchedules = new HashMap<>();
+        long[][] categories = null;
+        long[] any = null;
+        for (Map.Entry<String, long[]> entry : schedules.entrySet()) {
+            if (WeekSchedule.isEmpty(entry.getValue())) {
+                continue;
+            }
+            String key = entry.getKey();
+            compiled.put(key, entry.getValue());
+            any = union(any, entry.getValue());
+            int category = categoryOf(key);
+            if (category != CATEGORY_UNKNOWN) {
+                if (categories == null) {
+                    categories = new long[CATEGORY_NAMES.length][];
+                }
+                categories[category] = entry.getValue();
+            } else if (isPrefix(key)) {
+                prefixSchedules.put(key.substring(0, key.length() - 1), entry.getValue());
+            }
+        }
+        this.schedules = compiled;
+        this.prefixes = prefixSchedules.isEmpty() ? null : new PrefixTrie(prefixSchedules);
+        this.categorySchedules = categories;
+        this.dailyQuotas = Collections.unmodifiableMap(new HashMap<>(dailyQuotas));
+        this.anyScheduled = any;
+    }
+
+    public static boolean isPrefix(String key) {
+        return key.length() > 0 && key.charAt(key.length() - 1) == WILDCARD;
+    }
+
+    // CATEGORY_UNKNOWN when the key is not a known category key
+    public static int categoryOf(String key) {
+        if (!key.startsWith(CATEGORY_PREFIX)) {
+            return CATEGORY_UNKNOWN;
+        }
+        String name = key.substring(CATEGORY_PREFIX.length());
+        for (int i = 0; i < CATEGORY_NAMES.length; i++) {
+            if (CATEGORY_NAMES[i].equals(name)) {
+                return i;
+            }
+        }
+        return CATEGORY_UNKNOWN;
+    }
+
+    // Throws IllegalArgumentException for an unknown category or a wildcard anywhere but the end
+    public static void checkKey(String key) {
+        if (key.startsWith(CATEGORY_PREFIX)) {
+            if (categoryOf(key) == CATEGORY_UNKNOWN) {
+                throw new IllegalArgumentException("Unknown category: " + key);
+            }
+        } else if (key.indexOf(WILDCARD) != -1 && key.indexOf(WILDCARD) != key.length() - 1) {
+            throw new IllegalArgumentException("Wildcard must end the pattern: " + key);
+        }
+    }
+
+    // Exact and prefix rules only; see resolveSchedule for categories
+    public boolean isScheduled(String packageName, int minuteOfWeek) {
+        long[] bits = resolveSchedule(packageName, CATEGORY_UNKNOWN);
+        return bits != null && WeekSchedule.isSet(bits, minuteOfWeek);
+    }
+
+    // Union of the exact, prefix and category schedules that apply to the package, null when
+    // none does. category is the package's ApplicationInfo.category. Must not be modified
+    public long[] resolveSchedule(String packageName, int category) {
+        long[] bits = schedules.get(packageName);
+        if (prefixes != null) {
+            bits = union(bits, prefixes.match(packageName));
+        }
+        if (categorySchedules != null && category >= 0 && category < categorySchedules.length) {
+            bits = union(bits, categorySchedules[category]);
+        }
+        return bits;
+    }
+
+    private static long[] union(long[] a, long[] b) {
+        if (a == null) {
+            return b;
+        }
+        return b == null ? a : WeekSchedule.union(a, b);
+    }
+
+    // Compiled bitset of a rule key, null when it has no (non-empty) schedule. Must not be modified
+    public long[] getSchedule(String key) {
+        return schedules.get(key);
+    }
+
+    public boolean hasPrefixRules() {
+        return prefixes != null;
+    }
+
+    // False when resolving a package never needs its category
+    public boolean hasCategoryRules() {
+        return categorySchedules != null;
+    }
+
+    // Earliest time at or after now when some rule could block a package: now while a schedule
+    // window is open or when any quota exists (a budget can run out at any moment),
+    // Long.MAX_VALUE when nothing is restricted
+    public long nextActivation(long now) {
+        if (hasQuotas()) {
+            return now;
+        }
+        return anyScheduled != null ? WeekSchedule.nextSet(anyScheduled, now) : Long.MAX_VALUE;
+    }
+
+    // Returns -1 when the package has no daily quota
+    public long getDailyQuotaMs(String packageName) {
+        Long quota = dailyQuotas.get(packageName);
+        return quota != null ? quota : -1L;
+    }
+
+    public boolean hasQuotas() {
+        return !dailyQuotas.isEmpty();
+    }
+
+    public Map<String, Long> getDailyQuotas() {
+        return dailyQuotas;
+    }
+
+    public int scheduleCount() {
+        return schedules.size();
+    }
+}
@@ -0,0 +1,11 @@
+package com.saifouf.detox.core;
+
+public interface TransitionListener {
+    // Called once per MOVE_TO_FOREGROUND / MOVE_TO_BACKGROUND event, in timestamp order
+    // except for an event that surfaces late, which can follow newer ones
+    void onTransition(String packageName, boolean foreground, long timestamp);
+
+    // Transitions after timestamp were never read (e.g. a night with the screen off), so
+    // whatever was in front then is no longer known to be
+    void onTrackingLost(long timestamp);
+}
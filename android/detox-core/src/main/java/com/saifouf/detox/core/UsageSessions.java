@@ -0,0 +1,118 @@
+package com.saifouf.detox.core;
+
+/**
+ * Turns the MOVE_TO_FOREGROUND / MOVE_TO_BACKGROUND stream into foreground
+ * intervals per package. Shared by every usage consumer (daily totals, hourly
+ * history, replay) so they all count a session the same way; the owner keeps
+ * the buckets and persistence behind a Sink. Not thread-safe: callers lock.
+ */
+public final class UsageSessions implements TransitionListener {
+
+    public interface Sink {
+        // packageName was in front over [from, to); sign -1 takes back time counted earlier
+        void count(String packageName, long from, long to, int sign);
+    }
+
+    private final Sink sink;
+    private String openPackage = null;
+    // When the open session started, and how far it has been handed to the sink
+    private long openSince = 0L;
+    private long countedTo = 0L;
+    // Newest transition already counted; after a restart the detector re-reads
+    // a window the owner may have persisted already
+    private long countedUpTo = 0L;
+    private long ignoreBefore = 0L;
+
+    public UsageSessions(Sink sink) {
+        this.sink = sink;
+    }
+
+    // State saved by a previous run; transitions up to countedUpTo are not counted again
+    public void restore(long countedUpTo, String openPackage, long openSince) {
+        this.countedUpTo = countedUpTo;
+        this.ignoreBefore = countedUpTo;
+        this.openPackage = openPackage;
+        this.openSince = openSince;
+        this.countedTo = openSince;
+    }
+
+    @Override
+    public void onTransition(String packageName, boolean foreground, long timestamp) {
+        if (timestamp < ignoreBefore) {
+            return;
+        }
+        long newest = openPackage != null ? openSince : countedUpTo;
+        countedUpTo = Math.max(countedUpTo, timestamp);
+        if (timestamp < newest) {
+            // Surfaced after newer transitions: count the app up to them, leave the session alone
+            if (foreground) {
+                sink.count(packageName, timestamp, newest, 1);
+            }
+            return;
+        }
+        if (foreground) {
+            // A new foreground app implicitly ends the previous session (its
+            // MOVE_TO_BACKGROUND may be missing or come later with the same time)
+            close(timestamp);
+            openPackage = packageName;
+            openSince = timestamp;
+            countedTo = timestamp;
+        } else if (packageName.equals(openPackage)) {
+            close(timestamp);
+        }
+    }
+
+    // Ends the open session at timestamp: what followed it was never read
+    @Override
+    public void onTrackingLost(long timestamp) {
+        if (openPackage != null && timestamp >= openSince) {
+            close(timestamp);
+        }
+    }
+
+    // Hands the open session to the sink up to now, so a save includes it
+    public void countOpen(long now) {
+        if (openPackage != null && now > countedTo) {
+            sink.count(openPackage, countedTo, now, 1);
+            countedTo = now;
+        }
+    }
+
+    // Forgets the open session if it belongs to an uninstalled package
+    public void remove(String packageName) {
+        if (packageName.equals(openPackage)) {
+            openPackage = null;
+        }
+    }
+
+    // Null when nothing is in front
+    public String getOpenPackage() {
+        return openPackage;
+    }
+
+    public long getOpenSince() {
+        return openSince;
+    }
+
+    // Start of the part of the open session not yet handed to the sink
+    public long getCountedTo() {
+        return countedTo;
+    }
+
+    public long getCountedUpTo() {
+        return countedUpTo;
+    }
+
+    private void close(long timestamp) {
+        if (openPackage == null) {
+            return;
+        }
+        if (timestamp > countedTo) {
+            sink.count(openPackage, countedTo, timestamp, 1);
+        } else if (timestamp < countedTo) {
+            // countOpen counted the session past this late event; take the excess back
+            sink.count(openPackage, timestamp, countedTo, -1);
+        }
+        openPackage = null;
+    }
+}
@@ -0,0 +1,6 @@
+package com.saifouf.detox.core;
+
+public interface UsageSource {
+    // Foreground time of the package today, including a session still running
+    long getUsedToday(String packageName, long now);
+}
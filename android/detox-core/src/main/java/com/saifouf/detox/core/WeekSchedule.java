@@ -0,0 +1,126 @@
+package com.saifouf.detox.core;
+
+import java.util.TimeZone;
+
+/**
+ * Minute-of-week bitsets (Monday 00:00 is minute 0). Rules are compiled once
+ * when published, so "is this blocked now" is a single bit test.
+ */
+public final class WeekSchedule {
+    public static final int MINUTES_PER_DAY = 24 * 60;
+    public static final int MINUTES_PER_WEEK = 7 * MINUTES_PER_DAY;
+    private static final int WORDS = (MINUTES_PER_WEEK + 63) / 64;
+    private static final long MILLIS_PER_MINUTE = 60 * 1000;
+    private static final long MILLIS_PER_DAY = MINUTES_PER_DAY * MILLIS_PER_MINUTE;
+
+    // Cached because TimeZone.getDefault() returns a fresh clone on every call
+    private static volatile TimeZone timeZone = TimeZone.getDefault();
+
+    private WeekSchedule() {
+    }
+
+    public static long[] empty() {
+        return new long[WORDS];
+    }
+
+    // days is Monday first; a window whose end is before its start runs overnight
+    public static long[] compile(boolean[] days, int startMinute, int endMinute) {
+        long[] bits = new long[WORDS];
+        for (int day = 0; day < 7; day++) {
+            if (!days[day]) {
+                continue;
+            }
+            int dayStart = day * MINUTES_PER_DAY;
+            if (startMinute <= endMinute) {
+                setRange(bits, dayStart + startMinute, dayStart + endMinute);
+            } else {
+                // Overnight window: tail of this day, then head of the next (wrapping Sunday into Monday)
+                setRange(bits, dayStart + startMinute, dayStart + MINUTES_PER_DAY - 1);
+                int nextDayStart = ((day + 1) % 7) * MINUTES_PER_DAY;
+                setRange(bits, nextDayStart, nextDayStart + endMinute);
+            }
+        }
+        return bits;
+    }
+
+    // New bitset with the minutes of either; the inputs are left untouched
+    public static long[] union(long[] a, long[] b) {
+        long[] bits = new long[WORDS];
+        for (int i = 0; i < WORDS; i++) {
+            bits[i] = a[i] | b[i];
+        }
+        return bits;
+    }
+
+    public static boolean isSet(long[] bits, int minuteOfWeek) {
+        return (bits[minuteOfWeek >>> 6] & (1L << minuteOfWeek)) != 0;
+    }
+
+    public static boolean isEmpty(long[] bits) {
+        for (long word : bits) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Epoch millis of the first set minute at or after now (now itself when its minute is set),
+    // -1 when no minute is set. Walks the bitset a word at a time and wraps past Sunday
+    public static long nextSet(long[] bits, long now) {
+        int from = minuteOfWeek(now);
+        int distance = -1;
+        for (int scanned = 0; scanned < MINUTES_PER_WEEK; ) {
+            int minute = (from + scanned) % MINUTES_PER_WEEK;
+            // Bits past the end of the week in the last word are never set
+            long word = bits[minute >>> 6] >>> (minute & 63);
+            if (word != 0) {
+                distance = scanned + Long.numberOfTrailingZeros(word);
+                break;
+            }
+            scanned += Math.min(64 - (minute & 63), MINUTES_PER_WEEK - minute);
+        }
+        if (distance <= 0) {
+            return distance == 0 ? now : -1L;
+        }
+        long offset = timeZone.getOffset(now);
+        long at = now - Math.floorMod(now + offset, MILLIS_PER_MINUTE) + distance * MILLIS_PER_MINUTE;
+        // Minutes of the week are wall-clock minutes: shift by any DST change in between
+        return Math.max(now, at + offset - timeZone.getOffset(at));
+    }
+
+    public static int minuteOfWeek(long now) {
+        return minuteOfWeek(now, timeZone);
+    }
+
+    public static int minuteOfWeek(long now, TimeZone zone) {
+        long localMinutes = Math.floorDiv(now + zone.getOffset(now), MILLIS_PER_MINUTE);
+        long epochDay = Math.floorDiv(localMinutes, (long) MINUTES_PER_DAY);
+        // 1970-01-01 was a Thursday, which is day 3 counting from Monday
+        int dayOfWeek = (int) Math.floorMod(epochDay + 3, 7L);
+        int minuteOfDay = (int) Math.floorMod(localMinutes, (long) MINUTES_PER_DAY);
+        return dayOfWeek * MINUTES_PER_DAY + minuteOfDay;
+    }
+
+    // Local midnight at or before now, as epoch millis
+    public static long startOfDay(long now) {
+        long offset = timeZone.getOffset(now);
+        return Math.floorDiv(now + offset, MILLIS_PER_DAY) * MILLIS_PER_DAY - offset;
+    }
+
+    public static void refreshTimeZone() {
+        timeZone = TimeZone.getDefault();
+    }
+
+    // Pins the zone used by minuteOfWeek(now)/startOfDay, for replays and benchmarks
+    public static void setTimeZone(TimeZone zone) {
+        timeZone = zone;
+    }
+
+    // Inclusive on both ends, matching the JS startTime/endTime comparison
+    private static void setRange(long[] bits, int from, int to) {
+        for (int minute = from; minute <= to; minute++) {
+            bits[minute >>> 6] |= 1L << minute;
+        }
+    }
+}
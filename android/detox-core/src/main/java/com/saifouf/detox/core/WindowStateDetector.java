@@ -0,0 +1,55 @@
+package com.saifouf.detox.core;
+
+/**
+ * Push-based detection: the foreground package is whatever the last window
+ * state change reported, so detect() never queries anything. Reports
+ * transitions for usage accounting the same way ForegroundTracker does.
+ * Not thread-safe; fed and read on the monitoring thread.
+ */
+public class WindowStateDetector implements ForegroundDetector {
+    private final PackageRegistry packages;
+    private TransitionListener transitionListener;
+    private int foregroundId = PackageRegistry.NONE;
+
+    public WindowStateDetector(PackageRegistry packages) {
+        this.packages = packages;
+    }
+
+    public void setTransitionListener(TransitionListener listener) {
+        this.transitionListener = listener;
+    }
+
+    // Returns true when the foreground package changed
+    public boolean onWindowStateChanged(String packageName, long timestamp) {
+        if (packageName == null) {
+            return false;
+        }
+        int id = packages.intern(packageName);
+        if (id == foregroundId) {
+            return false;
+        }
+        if (transitionListener != null) {
+            if (foregroundId != PackageRegistry.NONE) {
+                transitionListener.onTransition(packages.nameOf(foregroundId), false, timestamp);
+            }
+            transitionListener.onTransition(packages.nameOf(id), true, timestamp);
+        }
+        foregroundId = id;
+        return true;
+    }
+
+    // Starts from a package known some other way, without reporting a transition
+    public void seed(String packageName) {
+        foregroundId = packageName != null ? packages.intern(packageName) : PackageRegistry.NONE;
+    }
+
+    @Override
+    public int detect(long now) {
+        return foregroundId;
+    }
+
+    @Override
+    public int getLastScanned() {
+        return 0;
+    }
+}
@@ -0,0 +1,134 @@
+package com.saifouf.detox.core.replay;
+
+import com.saifouf.detox.core.Clock;
+import com.saifouf.detox.core.EventSource;
+
+import java.util.Arrays;
+
+/**
+ * The timeline a replay sees: the recorded trace, changed by the blocks the
+ * engine performs. A block injects the HOME transition (background of the app,
+ * foreground of the launcher) after homeDelayMs and drops the rest of the
+ * app's recorded session, up to the user's next real app switch.
+ *
+ * Queries only return events at least eventDelayMs old on the virtual clock,
+ * modelling how late UsageStatsManager exposes events.
+ */
+final class ReplayEventSource implements EventSource {
+    private final Trace trace;
+    private final Clock clock;
+    private final long eventDelayMs;
+    private final long homeDelayMs;
+    private final String launcherPackage;
+    private final boolean[] dropped;
+
+    // Injected events, appended in timestamp order
+    private long[] injectedTimestamps = new long[64];
+    private int[] injectedTypes = new int[64];
+    private String[] injectedPackages = new String[64];
+    private int injectedSize = 0;
+
+    // Ground-truth cursor over the same timeline, ignoring eventDelayMs
+    private int truthTraceIndex = 0;
+    private int truthInjectedIndex = 0;
+
+    ReplayEventSource(Trace trace, Clock clock, long eventDelayMs, long homeDelayMs, String launcherPackage) {
+        this.trace = trace;
+        this.clock = clock;
+        this.eventDelayMs = eventDelayMs;
+        this.homeDelayMs = homeDelayMs;
+        this.launcherPackage = launcherPackage;
+        this.dropped = new boolean[trace.size()];
+    }
+
+    @Override
+    public void query(long begin, long end, Visitor visitor) {
+        // Exclusive bound: events newer than now - eventDelayMs are not visible yet
+        long visibleEnd = Math.min(end, clock.currentTimeMillis() - eventDelayMs + 1);
+        int traceIndex = lowerBound(trace.timestamps, trace.size(), begin);
+        int injectedIndex = lowerBound(injectedTimestamps, injectedSize, begin);
+        while (true) {
+            long traceTime = traceIndex < trace.size() ? trace.timestamps[traceIndex] : Long.MAX_VALUE;
+            long injectedTime = injectedIndex < injectedSize ? injectedTimestamps[injectedIndex] : Long.MAX_VALUE;
+            if (Math.min(traceTime, injectedTime) >= visibleEnd) {
+                return;
+            }
+            if (traceTime <= injectedTime) {
+                if (!dropped[traceIndex]) {
+                    visitor.onEvent(trace.packages[traceIndex], trace.types[traceIndex], traceTime);
+                }
+                traceIndex++;
+            } else {
+                visitor.onEvent(injectedPackages[injectedIndex], injectedTypes[injectedIndex], injectedTime);
+                injectedIndex++;
+            }
+        }
+    }
+
+    @Override
+    public String mostRecentlyUsed(long begin, long end) {
+        return null;
+    }
+
+    // Delivers every timeline event up to and including now, ignoring the visibility delay
+    void advanceTruth(long now, Visitor visitor) {
+        while (true) {
+            long traceTime = truthTraceIndex < trace.size() ? trace.timestamps[truthTraceIndex] : Long.MAX_VALUE;
+            long injectedTime = truthInjectedIndex < injectedSize ? injectedTimestamps[truthInjectedIndex] : Long.MAX_VALUE;
+            if (Math.min(traceTime, injectedTime) > now) {
+                return;
+            }
+            if (traceTime <= injectedTime) {
+                if (!dropped[truthTraceIndex]) {
+                    visitor.onEvent(trace.packages[truthTraceIndex], trace.types[truthTraceIndex], traceTime);
+                }
+                truthTraceIndex++;
+            } else {
+                visitor.onEvent(injectedPackages[truthInjectedIndex], injectedTypes[truthInjectedIndex], injectedTime);
+                truthInjectedIndex++;
+            }
+        }
+    }
+
+    // Applies the effect of blocking packageName at time now
+    void onBlocked(String packageName, long now) {
+        long homeAt = now + homeDelayMs;
+        inject(homeAt, MOVE_TO_BACKGROUND, packageName);
+        inject(homeAt, MOVE_TO_FOREGROUND, launcherPackage);
+        // The user's recorded session in the app ends at their next switch to another app
+        for (int i = lowerBound(trace.timestamps, trace.size(), now); i < trace.size(); i++) {
+            if (trace.types[i] == MOVE_TO_FOREGROUND && !packageName.equals(trace.packages[i])) {
+                break;
+            }
+            if (packageName.equals(trace.packages[i])) {
+                dropped[i] = true;
+            }
+        }
+    }
+
+    private void inject(long timestamp, int type, String packageName) {
+        if (injectedSize == injectedTimestamps.length) {
+            injectedTimestamps = Arrays.copyOf(injectedTimestamps, injectedSize * 2);
+            injectedTypes = Arrays.copyOf(injectedTypes, injectedSize * 2);
+            injectedPackages = Arrays.copyOf(injectedPackages, injectedSize * 2);
+        }
+        injectedTimestamps[injectedSize] = timestamp;
+        injectedTypes[injectedSize] = type;
+        injectedPackages[injectedSize] = packageName;
+        injectedSize++;
+    }
+
+    private static int lowerBound(long[] values, int size, long key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
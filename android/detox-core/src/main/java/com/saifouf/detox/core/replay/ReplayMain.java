@@ -0,0 +1,51 @@
+package com.saifouf.detox.core.replay;
+
+import com.saifouf.detox.core.RuleTable;
+import com.saifouf.detox.core.WeekSchedule;
+
+import java.io.File;
+import java.util.TimeZone;
+
+/**
+ * Command line entry: replay a trace against a rules file and print the report.
+ *
+ *   ReplayMain trace.dxt rules.txt [fast=500] [base=1000] [max=3000] [cooldown=3000]
+ *              [eventDelay=0] [homeDelay=300] [sample=250] [launcher=pkg] [tz=Europe/Paris]
+ */
+public final class ReplayMain {
+    private ReplayMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2 || args[0].isEmpty() || args[1].isEmpty()) {
+            System.err.println("usage: ReplayMain <trace file> <rules file> [key=value ...]");
+            System.exit(2);
+        }
+        ReplaySimulator.Config config = new ReplaySimulator.Config();
+        for (int i = 2; i < args.length; i++) {
+            int equals = args[i].indexOf('=');
+            if (equals <= 0) {
+                throw new IllegalArgumentException("Expected key=value: " + args[i]);
+            }
+            String key = args[i].substring(0, equals);
+            String value = args[i].substring(equals + 1);
+            switch (key) {
+                case "fast": config.fastIntervalMs = Long.parseLong(value); break;
+                case "base": config.baseIntervalMs = Long.parseLong(value); break;
+                case "max": config.maxIntervalMs = Long.parseLong(value); break;
+                case "cooldown": config.cooldownMs = Long.parseLong(value); break;
+                case "eventDelay": config.eventDelayMs = Long.parseLong(value); break;
+                case "homeDelay": config.homeDelayMs = Long.parseLong(value); break;
+                case "sample": config.sampleIntervalMs = Long.parseLong(value); break;
+                case "launcher": config.launcherPackage = value; break;
+                // Rules are evaluated in the phone's zone, not the desktop's
+                case "tz": WeekSchedule.setTimeZone(TimeZone.getTimeZone(value)); break;
+                default: throw new IllegalArgumentException("Unknown option " + key);
+            }
+        }
+        Trace trace = Trace.read(new File(args[0]));
+        RuleTable table = RulesFile.read(new File(args[1]));
+        System.out.println(trace.size() + " events, " + table.scheduleCount() + " schedules");
+        System.out.println(ReplaySimulator.run(trace, table, config));
+    }
+}
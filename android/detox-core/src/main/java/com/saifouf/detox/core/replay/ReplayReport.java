@@ -0,0 +1,99 @@
+package com.saifouf.detox.core.replay;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Outcome of one replay. Counters are public so tests can assert on them.
+ */
+public final class ReplayReport {
+
+    // Exact distribution of recorded values; replays are offline, so values are kept
+    public static final class Distribution {
+        private long[] values = new long[256];
+        private int size = 0;
+        private boolean sorted = true;
+        private long sum = 0;
+
+        void record(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+            sum += value;
+            sorted = false;
+        }
+
+        public int count() {
+            return size;
+        }
+
+        public double mean() {
+            return size > 0 ? (double) sum / size : 0.0;
+        }
+
+        public long sum() {
+            return sum;
+        }
+
+        public long percentile(double p) {
+            if (size == 0) {
+                return 0L;
+            }
+            if (!sorted) {
+                Arrays.sort(values, 0, size);
+                sorted = true;
+            }
+            int index = (int) Math.ceil(p * size) - 1;
+            return values[Math.max(0, Math.min(size - 1, index))];
+        }
+
+        public long max() {
+            return percentile(1.0);
+        }
+
+        String describe(String unit) {
+            return String.format(Locale.US, "n=%d mean=%.1f p50=%d p90=%d p99=%d max=%d %s",
+                    size, mean(), percentile(0.5), percentile(0.9), percentile(0.99), max(), unit);
+        }
+    }
+
+    public long ticks;
+    public long episodes;
+    public long blockedEpisodes;
+    public long missedBlocks;
+    // Episode still open and unblocked when the trace ended
+    public long pendingEpisodes;
+    public long blocks;
+    public long duplicateBlocks;
+    public long spuriousBlocks;
+    public long suppressedBlocks;
+    public long virtualDurationMs;
+    public long wallTimeNanos;
+    // Episode start to block, in virtual milliseconds
+    public final Distribution detectionLatencyMs = new Distribution();
+    public final Distribution eventsScanned = new Distribution();
+    public final Distribution tickWallNanos = new Distribution();
+
+    // Virtual time replayed per unit of wall time
+    public double speedup() {
+        return wallTimeNanos > 0 ? virtualDurationMs * 1e6 / wallTimeNanos : 0.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "replayed %.1f h in %.1f ms (%.0fx real time), %d ticks%n"
+                        + "episodes=%d blocked=%d missed=%d pending=%d%n"
+                        + "blocks=%d duplicate=%d spurious=%d suppressedByCooldown=%d%n"
+                        + "detection latency: %s%n"
+                        + "events scanned per tick: %s%n"
+                        + "tick cost: %s",
+                virtualDurationMs / 3600000.0, wallTimeNanos / 1e6, speedup(), ticks,
+                episodes, blockedEpisodes, missedBlocks, pendingEpisodes,
+                blocks, duplicateBlocks, spuriousBlocks, suppressedBlocks,
+                detectionLatencyMs.describe("ms"),
+                eventsScanned.describe("events"),
+                tickWallNanos.describe("ns"));
+    }
+}
@@ -0,0 +1,229 @@
+package com.saifouf.detox.core.replay;
+
+import com.saifouf.detox.core.BlockCooldown;
+import com.saifouf.detox.core.BlockingEngine;
+import com.saifouf.detox.core.Clock;
+import com.saifouf.detox.core.EventSource;
+import com.saifouf.detox.core.ForegroundTracker;
+import com.saifouf.detox.core.PackageRegistry;
+import com.saifouf.detox.core.PollingBackoff;
+import com.saifouf.detox.core.RestrictionMatcher;
+import com.saifouf.detox.core.RuleMatcher;
+import com.saifouf.detox.core.RuleTable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Drives BlockingEngine over a recorded trace on a virtual clock, ticking with
+ * the service's PollingBackoff cadence, and scores the blocks it performs
+ * against the ground truth of the same timeline.
+ *
+ * An episode is a stretch where a restricted app is truly in front. Each
+ * episode should get exactly one block: none is a missed block, more are
+ * duplicate blocks, and blocks outside any episode are spurious.
+ */
+public final class ReplaySimulator {
+
+    public static final class Config {
+        public long fastIntervalMs = PollingBackoff.FAST_INTERVAL;
+        public long baseIntervalMs = PollingBackoff.BASE_INTERVAL;
+        public long maxIntervalMs = PollingBackoff.MAX_INTERVAL;
+        public long cooldownMs = BlockCooldown.DEFAULT_COOLDOWN_MS;
+        // How long after its timestamp an event becomes visible to queryEvents
+        public long eventDelayMs = 0;
+        // Time from a block to the HOME transition landing in the event stream
+        public long homeDelayMs = 300;
+        // Resolution of ground-truth checks between events (schedule edges, quotas running out)
+        public long sampleIntervalMs = 250;
+        public String launcherPackage = "com.android.launcher";
+    }
+
+    private static final class Episode {
+        final String packageName;
+        final long start;
+        boolean blocked;
+
+        Episode(String packageName, long start) {
+            this.packageName = packageName;
+            this.start = start;
+        }
+    }
+
+    private static final class VirtualClock implements Clock {
+        long nowMs;
+
+        @Override
+        public long currentTimeMillis() {
+            return nowMs;
+        }
+
+        @Override
+        public long nanoTime() {
+            return nowMs * 1000000L;
+        }
+    }
+
+    private final Trace trace;
+    private final RuleTable table;
+    private final Config config;
+
+    private final VirtualClock clock = new VirtualClock();
+    // Shared by the engine and the ground truth
+    private final PackageRegistry packages = new PackageRegistry();
+    private final ReplayUsage truthUsage = new ReplayUsage();
+    private final ReplayEventSource source;
+    private final RestrictionMatcher truthMatcher;
+    private final PollingBackoff backoff;
+    private final Map<String, Episode> lastEpisodes = new HashMap<>();
+    private final ReplayReport report = new ReplayReport();
+    private String truthPackage = null;
+    private Episode openEpisode = null;
+
+    public ReplaySimulator(Trace trace, RuleTable table, Config config) {
+        this.trace = trace;
+        this.table = table;
+        this.config = config;
+        this.source = new ReplayEventSource(trace, clock, config.eventDelayMs, config.homeDelayMs,
+                config.launcherPackage);
+        this.truthMatcher = new RestrictionMatcher(table, truthUsage, packages);
+        this.backoff = new PollingBackoff(config.fastIntervalMs, config.baseIntervalMs, config.maxIntervalMs);
+    }
+
+    public static ReplayReport run(Trace trace, RuleTable table, Config config) {
+        return new ReplaySimulator(trace, table, config).run();
+    }
+
+    public ReplayReport run() {
+        ReplayUsage engineUsage = new ReplayUsage();
+        final ForegroundTracker tracker = new ForegroundTracker(source, packages);
+        tracker.setTransitionListener(engineUsage);
+        final RestrictionMatcher engineMatcher = new RestrictionMatcher(table, engineUsage, packages);
+        // Same quota wake-up as AppBlockingService.findBlockingRule
+        RuleMatcher matcher = new RuleMatcher() {
+            @Override
+            public int match(int packageId, long now) {
+                int rule = engineMatcher.match(packageId, now);
+                if (rule == RULE_NONE) {
+                    long remaining = engineMatcher.remainingQuotaMs(packageId, now);
+                    if (remaining > 0) {
+                        backoff.capNextInterval(remaining);
+                    }
+                }
+                return rule;
+            }
+        };
+        BlockingEngine engine = new BlockingEngine(packages, tracker, matcher, new BlockCooldown(config.cooldownMs), clock,
+                new BlockingEngine.Listener() {
+                    @Override
+                    public void onForegroundChanged(String packageName, long now) {
+                    }
+
+                    @Override
+                    public void onBlock(String packageName, int rule, long now, long detectedAtNanos) {
+                        onEngineBlock(packageName, now);
+                    }
+
+                    @Override
+                    public void onBlockSuppressed(String packageName, int rule, long now) {
+                        report.suppressedBlocks++;
+                    }
+                });
+
+        EventSource.Visitor truthVisitor = new EventSource.Visitor() {
+            @Override
+            public void onEvent(String packageName, int type, long timestamp) {
+                onTruthEvent(packageName, type, timestamp);
+            }
+        };
+
+        long start = trace.startTime();
+        long end = trace.endTime();
+        long nextTick = start;
+        long nextSample = start;
+        long wallStart = System.nanoTime();
+        while (true) {
+            long now = Math.min(nextTick, nextSample);
+            if (now > end || trace.size() == 0) {
+                break;
+            }
+            clock.nowMs = now;
+            source.advanceTruth(now, truthVisitor);
+            if (now == nextSample) {
+                evaluateTruth(now);
+                nextSample += config.sampleIntervalMs;
+            }
+            if (now == nextTick) {
+                long tickStart = System.nanoTime();
+                boolean changed = engine.tick();
+                report.tickWallNanos.record(System.nanoTime() - tickStart);
+                report.eventsScanned.record(tracker.getLastScanned());
+                report.ticks++;
+                nextTick = now + Math.max(1, backoff.next(changed));
+            }
+        }
+        report.wallTimeNanos = System.nanoTime() - wallStart;
+        report.virtualDurationMs = end - start;
+        if (openEpisode != null && !openEpisode.blocked) {
+            report.pendingEpisodes++;
+        }
+        return report;
+    }
+
+    private void onTruthEvent(String packageName, int type, long timestamp) {
+        if (type != EventSource.MOVE_TO_FOREGROUND && type != EventSource.MOVE_TO_BACKGROUND) {
+            return;
+        }
+        boolean foreground = type == EventSource.MOVE_TO_FOREGROUND;
+        truthUsage.onTransition(packageName, foreground, timestamp);
+        if (foreground) {
+            truthPackage = packageName;
+        } else if (packageName.equals(truthPackage)) {
+            truthPackage = null;
+        }
+        evaluateTruth(timestamp);
+    }
+
+    private void evaluateTruth(long now) {
+        boolean restricted = truthPackage != null
+                && truthMatcher.match(packages.intern(truthPackage), now) != RuleMatcher.RULE_NONE;
+        if (openEpisode != null && (!restricted || !openEpisode.packageName.equals(truthPackage))) {
+            closeEpisode();
+        }
+        if (restricted && openEpisode == null) {
+            openEpisode = new Episode(truthPackage, now);
+            report.episodes++;
+        }
+    }
+
+    private void closeEpisode() {
+        if (openEpisode.blocked) {
+            report.blockedEpisodes++;
+        } else {
+            report.missedBlocks++;
+        }
+        lastEpisodes.put(openEpisode.packageName, openEpisode);
+        openEpisode = null;
+    }
+
+    private void onEngineBlock(String packageName, long now) {
+        report.blocks++;
+        if (openEpisode != null && openEpisode.packageName.equals(packageName)) {
+            if (openEpisode.blocked) {
+                report.duplicateBlocks++;
+            } else {
+                openEpisode.blocked = true;
+                report.detectionLatencyMs.record(now - openEpisode.start);
+            }
+        } else {
+            Episode last = lastEpisodes.get(packageName);
+            if (last != null && last.blocked) {
+                // The HOME transition of the previous block was not visible yet
+                report.duplicateBlocks++;
+            } else {
+                report.spuriousBlocks++;
+            }
+        }
+        source.onBlocked(packageName, now);
+    }
+}
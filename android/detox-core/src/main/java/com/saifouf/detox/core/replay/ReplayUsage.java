@@ -0,0 +1,67 @@
+package com.saifouf.detox.core.replay;
+
+import com.saifouf.detox.core.TransitionListener;
+import com.saifouf.detox.core.UsageSessions;
+import com.saifouf.detox.core.UsageSource;
+import com.saifouf.detox.core.WeekSchedule;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory daily usage totals over the same UsageSessions as the app's
+ * UsageAccountant, minus persistence.
+ */
+final class ReplayUsage implements TransitionListener, UsageSource {
+    private final Map<String, long[]> totals = new HashMap<>();
+    private long dayStart = Long.MIN_VALUE;
+    private final UsageSessions sessions = new UsageSessions(new UsageSessions.Sink() {
+        @Override
+        public void count(String packageName, long from, long to, int sign) {
+            add(packageName, from, to, sign);
+        }
+    });
+
+    @Override
+    public void onTransition(String packageName, boolean foreground, long timestamp) {
+        rollOver(timestamp);
+        sessions.onTransition(packageName, foreground, timestamp);
+    }
+
+    @Override
+    public void onTrackingLost(long timestamp) {
+        sessions.onTrackingLost(timestamp);
+    }
+
+    @Override
+    public long getUsedToday(String packageName, long now) {
+        rollOver(now);
+        long[] cell = totals.get(packageName);
+        long used = cell != null ? cell[0] : 0L;
+        if (packageName.equals(sessions.getOpenPackage())) {
+            used += Math.max(0L, now - Math.max(sessions.getCountedTo(), dayStart));
+        }
+        return used;
+    }
+
+    private void add(String packageName, long from, long to, int sign) {
+        from = Math.max(from, dayStart);
+        if (to > from) {
+            long[] cell = totals.get(packageName);
+            if (cell == null) {
+                cell = new long[1];
+                totals.put(packageName, cell);
+            }
+            cell[0] = Math.max(0L, cell[0] + sign * (to - from));
+        }
+    }
+
+    private void rollOver(long now) {
+        long today = WeekSchedule.startOfDay(now);
+        if (today <= dayStart) {
+            return;
+        }
+        totals.clear();
+        dayStart = today;
+    }
+}
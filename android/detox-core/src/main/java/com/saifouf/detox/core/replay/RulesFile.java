@@ -0,0 +1,116 @@
+package com.saifouf.detox.core.replay;
+
+import com.saifouf.detox.core.RuleTable;
+import com.saifouf.detox.core.WeekSchedule;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Plain-text rules for replays, one per line ('#' starts a comment):
+ *
+ *   schedule com.instagram.android 1111100 09:00 17:00
+ *   quota com.instagram.android 30
+ *
+ * Days are Monday first; a window whose end is before its start runs
+ * overnight; quotas are in minutes. Several schedules for a package are OR-ed.
+ * Schedules also take RuleTable pattern keys ("com.facebook.*"); category keys
+ * are kept but never match, as a trace carries no app categories.
+ */
+public final class RulesFile {
+    private RulesFile() {
+    }
+
+    public static RuleTable read(File file) throws IOException {
+        Reader reader = new FileReader(file);
+        try {
+            return read(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    public static RuleTable read(Reader source) throws IOException {
+        BufferedReader reader = new BufferedReader(source);
+        Map<String, long[]> schedules = new HashMap<>();
+        Map<String, Long> quotas = new HashMap<>();
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] parts = line.split("\\s+");
+            try {
+                if (parts[0].equals("schedule") && parts.length == 5) {
+                    long[] bits = WeekSchedule.compile(parseDays(parts[2]), parseTime(parts[3]), parseTime(parts[4]));
+                    long[] existing = schedules.get(parts[1]);
+                    if (existing != null) {
+                        for (int i = 0; i < bits.length; i++) {
+                            bits[i] |= existing[i];
+                        }
+                    }
+                    schedules.put(parts[1], bits);
+                } else if (parts[0].equals("quota") && parts.length == 3) {
+                    quotas.put(parts[1], Long.parseLong(parts[2]) * 60 * 1000);
+                } else {
+                    throw new IllegalArgumentException("Unknown rule");
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Line " + lineNumber + ": " + e.getMessage() + ": " + line);
+            }
+        }
+        return new RuleTable(schedules, quotas);
+    }
+
+    public static String formatSchedule(String packageName, boolean[] days, int startMinute, int endMinute) {
+        StringBuilder builder = new StringBuilder("schedule ").append(packageName).append(' ');
+        for (boolean day : days) {
+            builder.append(day ? '1' : '0');
+        }
+        return builder.append(' ').append(formatTime(startMinute))
+                .append(' ').append(formatTime(endMinute)).toString();
+    }
+
+    public static String formatQuota(String packageName, long quotaMs) {
+        return "quota " + packageName + " " + quotaMs / (60 * 1000);
+    }
+
+    private static boolean[] parseDays(String days) {
+        if (days.length() != 7) {
+            throw new IllegalArgumentException("Expected 7 day flags");
+        }
+        boolean[] result = new boolean[7];
+        for (int i = 0; i < 7; i++) {
+            result[i] = days.charAt(i) == '1';
+        }
+        return result;
+    }
+
+    private static int parseTime(String time) {
+        int colon = time.indexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("Invalid time " + time);
+        }
+        int minutes = Integer.parseInt(time.substring(0, colon)) * 60 + Integer.parseInt(time.substring(colon + 1));
+        if (minutes < 0 || minutes >= WeekSchedule.MINUTES_PER_DAY) {
+            throw new IllegalArgumentException("Invalid time " + time);
+        }
+        return minutes;
+    }
+
+    private static String formatTime(int minutes) {
+        return String.format(java.util.Locale.US, "%02d:%02d", minutes / 60, minutes % 60);
+    }
+}
@@ -0,0 +1,161 @@
+package com.saifouf.detox.core.replay;
+
+import com.saifouf.detox.core.EventSource;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Captured usage events, sorted by timestamp, in parallel arrays.
+ *
+ * File format: int magic "DXTR", int version, then records until EOF of
+ * (long timestamp, byte type, UTF package name). Types are UsageEvents.Event
+ * values; only the foreground/background ones matter to the engine.
+ */
+public final class Trace {
+    public static final int MAGIC = 0x44585452;
+    public static final int VERSION = 1;
+
+    public final long[] timestamps;
+    public final int[] types;
+    public final String[] packages;
+
+    public Trace(long[] timestamps, int[] types, String[] packages) {
+        if (timestamps.length != types.length || types.length != packages.length) {
+            throw new IllegalArgumentException("Trace columns differ in length");
+        }
+        for (int i = 1; i < timestamps.length; i++) {
+            if (timestamps[i] < timestamps[i - 1]) {
+                throw new IllegalArgumentException("Trace is not sorted at record " + i);
+            }
+        }
+        this.timestamps = timestamps;
+        this.types = types;
+        this.packages = packages;
+    }
+
+    public int size() {
+        return timestamps.length;
+    }
+
+    public long startTime() {
+        return timestamps.length > 0 ? timestamps[0] : 0L;
+    }
+
+    public long endTime() {
+        return timestamps.length > 0 ? timestamps[timestamps.length - 1] : 0L;
+    }
+
+    // Streams records to a trace file as they are captured
+    public static final class Writer implements EventSource.Visitor, AutoCloseable {
+        private final DataOutputStream out;
+        private int count = 0;
+        private IOException error;
+
+        public Writer(OutputStream stream) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(stream));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+        }
+
+        @Override
+        public void onEvent(String packageName, int type, long timestamp) {
+            if (error != null || packageName == null) {
+                return;
+            }
+            try {
+                out.writeLong(timestamp);
+                out.writeByte(type);
+                out.writeUTF(packageName);
+                count++;
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+            if (error != null) {
+                throw error;
+            }
+        }
+    }
+
+    public static Trace read(File file) throws IOException {
+        InputStream stream = new FileInputStream(file);
+        try {
+            return read(stream);
+        } finally {
+            stream.close();
+        }
+    }
+
+    public static Trace read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a trace file");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported trace version " + version);
+        }
+        long[] timestamps = new long[1024];
+        int[] types = new int[1024];
+        String[] packages = new String[1024];
+        // One String instance per package, so the engine compares mostly identical references
+        Map<String, String> interned = new HashMap<>();
+        int size = 0;
+        while (true) {
+            long timestamp;
+            try {
+                timestamp = in.readLong();
+            } catch (EOFException end) {
+                break;
+            }
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                types = Arrays.copyOf(types, size * 2);
+                packages = Arrays.copyOf(packages, size * 2);
+            }
+            timestamps[size] = timestamp;
+            types[size] = in.readByte();
+            String packageName = in.readUTF();
+            String existing = interned.get(packageName);
+            if (existing == null) {
+                interned.put(packageName, packageName);
+                existing = packageName;
+            }
+            packages[size] = existing;
+            size++;
+        }
+        return new Trace(Arrays.copyOf(timestamps, size), Arrays.copyOf(types, size), Arrays.copyOf(packages, size));
+    }
+
+    public static void write(Trace trace, File file) throws IOException {
+        Writer writer = new Writer(new FileOutputStream(file));
+        try {
+            for (int i = 0; i < trace.size(); i++) {
+                writer.onEvent(trace.packages[i], trace.types[i], trace.timestamps[i]);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+}
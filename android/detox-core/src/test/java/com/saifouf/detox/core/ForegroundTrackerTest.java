@@ -0,0 +1,174 @@
+package com.saifouf.detox.core;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+public class ForegroundTrackerTest {
+    private static final long MINUTE_MS = 60 * 1000;
+    private static final long HOUR_MS = 60 * MINUTE_MS;
+    private static final long T0 = 1700000000000L;
+
+    // Events in the order UsageStatsManager exposes them, which need not be timestamp order
+    private static final class FakeSource implements EventSource {
+        final List<Object[]> events = new ArrayList<>();
+
+        void add(String packageName, int type, long timestamp) {
+            events.add(new Object[] {packageName, type, timestamp});
+        }
+
+        @Override
+        public void query(long begin, long end, Visitor visitor) {
+            for (Object[] event : events) {
+                long timestamp = (Long) event[2];
+                if (timestamp >= begin && timestamp < end) {
+                    visitor.onEvent((String) event[0], (Integer) event[1], timestamp);
+                }
+            }
+        }
+
+        @Override
+        public String mostRecentlyUsed(long begin, long end) {
+            return null;
+        }
+    }
+
+    private static final class Totals implements UsageSessions.Sink {
+        final Map<String, Long> used = new HashMap<>();
+
+        @Override
+        public void count(String packageName, long from, long to, int sign) {
+            Long total = used.get(packageName);
+            used.put(packageName, (total != null ? total : 0L) + sign * (to - from));
+        }
+
+        long get(String packageName) {
+            Long total = used.get(packageName);
+            return total != null ? total : 0L;
+        }
+    }
+
+    private static final class Recorder implements TransitionListener {
+        final List<String> transitions = new ArrayList<>();
+
+        @Override
+        public void onTransition(String packageName, boolean foreground, long timestamp) {
+            transitions.add(packageName + (foreground ? "+" : "-") + timestamp);
+        }
+
+        @Override
+        public void onTrackingLost(long timestamp) {
+            transitions.add("lost " + timestamp);
+        }
+    }
+
+    @Test
+    public void lateEventInTheOverlapIsReportedOnce() {
+        FakeSource source = new FakeSource();
+        ForegroundTracker tracker = new ForegroundTracker(source, new PackageRegistry());
+        Recorder recorder = new Recorder();
+        tracker.setTransitionListener(recorder);
+
+        source.add("a", EventSource.MOVE_TO_FOREGROUND, 10000);
+        source.add("b", EventSource.MOVE_TO_FOREGROUND, 10500);
+        tracker.detect(11000);
+        // Older than b, exposed after b was already reported
+        source.add("a", EventSource.MOVE_TO_BACKGROUND, 10400);
+        tracker.detect(12000);
+        tracker.detect(13000);
+
+        assertEquals(Arrays.asList("a+10000", "b+10500", "a-10400"), recorder.transitions);
+        assertEquals("b", tracker.getForegroundPackage());
+    }
+
+    @Test
+    public void eventsSharingATimestampAreEachReportedOnce() {
+        FakeSource source = new FakeSource();
+        ForegroundTracker tracker = new ForegroundTracker(source, new PackageRegistry());
+        Recorder recorder = new Recorder();
+        tracker.setTransitionListener(recorder);
+
+        source.add("a", EventSource.MOVE_TO_BACKGROUND, 10000);
+        source.add("b", EventSource.MOVE_TO_FOREGROUND, 10000);
+        source.add("b", EventSource.MOVE_TO_BACKGROUND, 10000);
+        tracker.detect(11000);
+        // Same timestamp as the newest reported events, exposed one tick later
+        source.add("c", EventSource.MOVE_TO_FOREGROUND, 10000);
+        tracker.detect(12000);
+        tracker.detect(13000);
+
+        assertEquals(Arrays.asList("a-10000", "b+10000", "b-10000", "c+10000"), recorder.transitions);
+    }
+
+    @Test
+    public void burstOverflowingTheRecentListIsNotRepeated() {
+        FakeSource source = new FakeSource();
+        ForegroundTracker tracker = new ForegroundTracker(source, new PackageRegistry());
+        Recorder recorder = new Recorder();
+        tracker.setTransitionListener(recorder);
+
+        for (int i = 0; i < 70; i++) {
+            source.add("p" + i, EventSource.MOVE_TO_FOREGROUND, 10000 + i);
+        }
+        tracker.detect(11000);
+        assertEquals(70, recorder.transitions.size());
+
+        // Newer than the timestamps given up to make room
+        source.add("late", EventSource.MOVE_TO_FOREGROUND, 10050);
+        tracker.detect(12000);
+        tracker.detect(13000);
+
+        assertEquals(71, recorder.transitions.size());
+        assertEquals("late+10050", recorder.transitions.get(70));
+        assertEquals(71, new HashSet<>(recorder.transitions).size());
+        assertEquals("p69", tracker.getForegroundPackage());
+    }
+
+    @Test
+    public void clockGoingBackwardsReportsTheNewTimeline() {
+        FakeSource source = new FakeSource();
+        ForegroundTracker tracker = new ForegroundTracker(source, new PackageRegistry());
+        Recorder recorder = new Recorder();
+        tracker.setTransitionListener(recorder);
+
+        source.add("a", EventSource.MOVE_TO_FOREGROUND, 100000);
+        tracker.detect(101000);
+        // Wall clock set back 88 s; later events are stamped with the new time
+        source.add("b", EventSource.MOVE_TO_FOREGROUND, 12000);
+        tracker.detect(13000);
+        tracker.detect(14000);
+
+        assertEquals(Arrays.asList("a+100000", "b+12000"), recorder.transitions);
+        assertEquals("b", tracker.getForegroundPackage());
+    }
+
+    @Test
+    public void screenOffLongerThanCatchUpDoesNotChargeTheNight() {
+        FakeSource source = new FakeSource();
+        ForegroundTracker tracker = new ForegroundTracker(source, new PackageRegistry());
+        Totals totals = new Totals();
+        tracker.setTransitionListener(new UsageSessions(totals));
+
+        source.add("app", EventSource.MOVE_TO_FOREGROUND, T0);
+        for (long now = T0 + 1000; now <= T0 + 5 * MINUTE_MS; now += 1000) {
+            tracker.detect(now);
+        }
+        // Backgrounded at screen off, after the last tick read the stream
+        source.add("app", EventSource.MOVE_TO_BACKGROUND, T0 + 5 * MINUTE_MS + 200);
+        source.add("com.android.launcher", EventSource.MOVE_TO_FOREGROUND, T0 + 8 * HOUR_MS);
+        tracker.detect(T0 + 8 * HOUR_MS + 1000);
+        source.add("other", EventSource.MOVE_TO_FOREGROUND, T0 + 8 * HOUR_MS + 5000);
+        tracker.detect(T0 + 8 * HOUR_MS + 6000);
+
+        // Counted up to the last read, not through the night
+        assertEquals(5 * MINUTE_MS, totals.get("app"));
+        assertEquals(5000, totals.get("com.android.launcher"));
+    }
+}
@@ -0,0 +1,71 @@
+package com.saifouf.detox.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class UsageSessionsTest {
+
+    private static final class RecordingSink implements UsageSessions.Sink {
+        final List<String> counted = new ArrayList<>();
+
+        @Override
+        public void count(String packageName, long from, long to, int sign) {
+            counted.add((sign < 0 ? "-" : "") + packageName + " " + from + ".." + to);
+        }
+    }
+
+    @Test
+    public void foregroundEndsThePreviousSession() {
+        RecordingSink sink = new RecordingSink();
+        UsageSessions sessions = new UsageSessions(sink);
+        sessions.onTransition("a", true, 1000);
+        sessions.onTransition("b", true, 4000);
+        // Background of a, recorded after b came to the front
+        sessions.onTransition("a", false, 4000);
+        sessions.onTransition("b", false, 9000);
+
+        assertEquals(Arrays.asList("a 1000..4000", "b 4000..9000"), sink.counted);
+        assertNull(sessions.getOpenPackage());
+    }
+
+    @Test
+    public void lateForegroundCountsUpToTheSessionThatFollowedIt() {
+        RecordingSink sink = new RecordingSink();
+        UsageSessions sessions = new UsageSessions(sink);
+        sessions.onTransition("b", true, 5000);
+        sessions.onTransition("a", true, 3000);
+        sessions.onTransition("a", false, 4000);
+
+        assertEquals(Arrays.asList("a 3000..5000"), sink.counted);
+        assertEquals("b", sessions.getOpenPackage());
+        assertEquals(5000, sessions.getOpenSince());
+    }
+
+    @Test
+    public void closeBeforeCountedOpenTimeTakesTheExcessBack() {
+        RecordingSink sink = new RecordingSink();
+        UsageSessions sessions = new UsageSessions(sink);
+        sessions.onTransition("a", true, 1000);
+        sessions.countOpen(6000);
+        sessions.onTransition("a", false, 5000);
+
+        assertEquals(Arrays.asList("a 1000..6000", "-a 5000..6000"), sink.counted);
+    }
+
+    @Test
+    public void restoredStateIgnoresTransitionsAlreadyCounted() {
+        RecordingSink sink = new RecordingSink();
+        UsageSessions sessions = new UsageSessions(sink);
+        sessions.restore(8000, "a", 7000);
+        sessions.onTransition("a", true, 7000);
+        sessions.onTransition("a", false, 10000);
+
+        assertEquals(Arrays.asList("a 7000..10000"), sink.counted);
+    }
+}
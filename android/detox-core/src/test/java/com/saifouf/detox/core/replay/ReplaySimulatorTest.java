@@ -0,0 +1,95 @@
+package com.saifouf.detox.core.replay;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.saifouf.detox.core.EventSource;
+import com.saifouf.detox.core.RuleTable;
+import com.saifouf.detox.core.WeekSchedule;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Replays a small synthetic trace under the original service cadence (fixed
+ * 1000 ms CHECK_INTERVAL, 3000 ms BLOCK_COOLDOWN_MS) and checks every episode
+ * gets exactly one block within one check interval.
+ */
+public class ReplaySimulatorTest {
+    private static final long CHECK_INTERVAL = 1000;
+    private static final long BLOCK_COOLDOWN_MS = 3000;
+
+    private static final String LAUNCHER = "com.android.launcher";
+    private static final String MAIL = "com.example.mail";
+    private static final String VIDEO = "com.example.video";
+    private static final String GAME = "com.example.game";
+
+    private static final long T0 = 1700000000000L;
+
+    @Test
+    public void baselineBlocksEveryEpisodeOnce() {
+        Trace trace = new Trace(
+                new long[] {
+                        T0,
+                        T0 + 5000, T0 + 5000,
+                        T0 + 20000, T0 + 20000,
+                        T0 + 40000, T0 + 40000,
+                        T0 + 55000, T0 + 55000,
+                        T0 + 70000, T0 + 70000,
+                        T0 + 90000, T0 + 90000,
+                        T0 + 120000,
+                },
+                new int[] {
+                        EventSource.MOVE_TO_FOREGROUND,
+                        EventSource.MOVE_TO_BACKGROUND, EventSource.MOVE_TO_FOREGROUND,
+                        EventSource.MOVE_TO_BACKGROUND, EventSource.MOVE_TO_FOREGROUND,
+                        EventSource.MOVE_TO_BACKGROUND, EventSource.MOVE_TO_FOREGROUND,
+                        EventSource.MOVE_TO_BACKGROUND, EventSource.MOVE_TO_FOREGROUND,
+                        EventSource.MOVE_TO_BACKGROUND, EventSource.MOVE_TO_FOREGROUND,
+                        EventSource.MOVE_TO_BACKGROUND, EventSource.MOVE_TO_FOREGROUND,
+                        EventSource.MOVE_TO_BACKGROUND,
+                },
+                new String[] {
+                        LAUNCHER,
+                        LAUNCHER, MAIL,
+                        MAIL, VIDEO,
+                        VIDEO, MAIL,
+                        MAIL, GAME,
+                        GAME, LAUNCHER,
+                        LAUNCHER, VIDEO,
+                        VIDEO,
+                });
+
+        ReplaySimulator.Config config = new ReplaySimulator.Config();
+        config.fastIntervalMs = CHECK_INTERVAL;
+        config.baseIntervalMs = CHECK_INTERVAL;
+        config.maxIntervalMs = CHECK_INTERVAL;
+        config.cooldownMs = BLOCK_COOLDOWN_MS;
+
+        ReplayReport report = ReplaySimulator.run(trace, alwaysRestricted(VIDEO, GAME), config);
+
+        assertEquals(3, report.episodes);
+        assertEquals(3, report.blockedEpisodes);
+        assertEquals(0, report.missedBlocks);
+        assertEquals(0, report.pendingEpisodes);
+        assertEquals(0, report.duplicateBlocks);
+        assertEquals(0, report.spuriousBlocks);
+        assertTrue("max latency " + report.detectionLatencyMs.max(),
+                report.detectionLatencyMs.max() <= CHECK_INTERVAL);
+    }
+
+    // Every minute of every day, so the result does not depend on the time zone
+    private static RuleTable alwaysRestricted(String... packageNames) {
+        boolean[] days = new boolean[7];
+        Arrays.fill(days, true);
+        Map<String, long[]> schedules = new HashMap<>();
+        for (String packageName : packageNames) {
+            schedules.put(packageName, WeekSchedule.compile(days, 0, 24 * 60 - 1));
+        }
+        return new RuleTable(schedules, Collections.<String, Long>emptyMap());
+    }
+}
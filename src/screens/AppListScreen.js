@@ -11,7 +11,7 @@ import {
 } from 'react-native';
 import { GlobalStyles, Colors } from '../styles/GlobalStyles';
 import Icon from 'react-native-vector-icons/MaterialCommunityIcons';
-import { getInstalledApps, getAppIconSource } from '../services/AppService';
+import { streamInstalledApps, getAppIconSource } from '../services/AppService';
 import { getRestrictedApps } from '../services/StorageService';
 
 const AppListScreen = ({ navigation }) => {
@@ -33,18 +33,18 @@ const AppListScreen = ({ navigation }) => {
   const loadApps = async () => {
     try {
       setLoading(true);
-      const [installedApps, restricted] = await Promise.all([
-        getInstalledApps(),
-        getRestrictedApps()
-      ]);
-      
-      // Sort apps by name
-      const sortedApps = installedApps.sort((a, b) => 
-        a.name.localeCompare(b.name)
-      );
-      
-      setApps(sortedApps);
-      setRestrictedApps(restricted);
+      getRestrictedApps().then(setRestrictedApps);
+
+      // Show each page as soon as it arrives instead of waiting for the full list
+      let loadedApps = [];
+      await streamInstalledApps((page) => {
+        // Sort apps by name
+        loadedApps = [...loadedApps, ...page].sort((a, b) =>
+          a.name.localeCompare(b.name)
+        );
+        setApps(loadedApps);
+        setLoading(false);
+      });
     } catch (error) {
       console.error('Error loading apps:', error);
     } finally {
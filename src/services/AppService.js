@@ -1,7 +1,42 @@
-import { Platform, NativeModules } from 'react-native';
+import { Platform, NativeEventEmitter } from 'react-native';
+import AppListeModule from '../specs/NativeAppListeModule';
 import { checkPermissions } from './PermissionService';
+import { deleteRestriction, getRestrictedApps } from './StorageService';
 
-const { AppListeModule } = NativeModules;
+const appListeEmitter = AppListeModule ? new NativeEventEmitter(AppListeModule) : null;
+let streamRequestCounter = 0;
+
+// Local copy of the native app catalog, kept current with getAppsChangedSince deltas
+let catalogToken = 0;
+const catalogApps = new Map();
+
+const toApp = (app) => ({
+  name: app.name || 'Unknown App',
+  packageName: app.packageName,
+  iconUri: app.iconUri || null
+});
+
+// Must match AppListeModule.SEPARATOR
+const COLUMN_SEPARATOR = '\u001f';
+
+const splitColumn = (column, count) => (count > 0 ? column.split(COLUMN_SEPARATOR) : []);
+
+// Turns the columnar app list from AppListeModule back into { name, packageName, iconUri, launchable }
+export const decodeAppColumns = ({ count, packageNames, names, iconUris, launchable }) => {
+  const packages = splitColumn(packageNames, count);
+  const labels = splitColumn(names, count);
+  const icons = splitColumn(iconUris, count);
+  const apps = new Array(count);
+  for (let i = 0; i < count; i++) {
+    apps[i] = {
+      name: labels[i],
+      packageName: packages[i],
+      iconUri: icons[i] || null,
+      launchable: launchable.charCodeAt(i) === 49, // '1'
+    };
+  }
+  return apps;
+};
 
 // Mock data as fallback
 // const MOCK_APPS = [
@@ -43,17 +78,20 @@ export const getInstalledApps = async () => {
     }
 
     // Use native module to get real installed apps
-    if (Platform.OS === 'android' && AppListeModule) {
+    if (Platform.OS === 'android' && AppListeModule?.getAppsChangedSince) {
+      try {
+        const catalog = await syncAppCatalog();
+        return [...catalog.values()].filter(app => app.launchable).map(toApp);
+      } catch (nativeError) {
+        console.error('Error syncing app catalog:', nativeError);
+      }
+    } else if (Platform.OS === 'android' && AppListeModule) {
       try {
-        const apps = await AppListeModule.getNonSystemApps();
+        const apps = decodeAppColumns(await AppListeModule.getNonSystemApps());
         console.log(`Found ${apps.length} installed apps`);
 
         // Process the apps to ensure they have the correct structure
-        const processedApps = apps.map(app => ({
-          name: app.name || 'Unknown App',
-          packageName: app.packageName,
-          icon: app.icon || null
-        }));
+        const processedApps = apps.map(toApp);
 
         return processedApps;
       } catch (nativeError) {
@@ -70,15 +108,34 @@ export const getInstalledApps = async () => {
   }
 };
 
+// Applies only what changed natively since the last sync; the first call receives the full list
+export const syncAppCatalog = async () => {
+  const delta = await AppListeModule.getAppsChangedSince(catalogToken);
+  if (delta.reset) {
+    catalogApps.clear();
+  }
+  decodeAppColumns(delta.apps).forEach(app => catalogApps.set(app.packageName, app));
+  const removed = delta.removed ? delta.removed.split(COLUMN_SEPARATOR) : [];
+  removed.forEach(packageName => catalogApps.delete(packageName));
+  catalogToken = delta.token;
+
+  // Native already dropped rules for uninstalled apps; mirror that in AsyncStorage
+  if (removed.length > 0) {
+    const restrictedApps = await getRestrictedApps();
+    for (const packageName of removed) {
+      if (restrictedApps[packageName]) {
+        await deleteRestriction(packageName);
+      }
+    }
+  }
+  return catalogApps;
+};
+
 export const getAllInstalledApps = async () => {
   try {
     if (Platform.OS === 'android' && AppListeModule) {
-      const apps = await AppListeModule.getInstalledApps();
-      return apps.map(app => ({
-        name: app.name || 'Unknown App',
-        packageName: app.packageName,
-        icon: app.icon || null
-      }));
+      const apps = decodeAppColumns(await AppListeModule.getInstalledApps());
+      return apps.map(toApp);
     }
     return await getInstalledApps();
   } catch (error) {
@@ -87,6 +144,39 @@ export const getAllInstalledApps = async () => {
   }
 };
 
+// Streams launchable non-system apps page by page. onPage receives each new
+// page as soon as the native side has it; the promise resolves with all apps.
+export const streamInstalledApps = (onPage, pageSize = 20, iconSizePx = 0) => {
+  if (Platform.OS !== 'android' || !AppListeModule?.streamApps || !appListeEmitter) {
+    return getInstalledApps().then((apps) => {
+      if (apps && onPage) onPage(apps);
+      return apps || [];
+    });
+  }
+
+  return new Promise((resolve, reject) => {
+    const requestId = `apps-${++streamRequestCounter}`;
+    const allApps = [];
+    const subscription = appListeEmitter.addListener('AppListePage', (event) => {
+      if (event.requestId !== requestId) return;
+      if (event.apps) {
+        const page = event.apps.map(toApp);
+        allApps.push(...page);
+        if (onPage) onPage(page);
+      }
+      if (event.done) {
+        subscription.remove();
+        if (event.error) {
+          reject(new Error(event.error));
+        } else {
+          resolve(allApps);
+        }
+      }
+    });
+    AppListeModule.streamApps(requestId, true, pageSize, iconSizePx);
+  });
+};
+
 export const getForegroundApp = async () => {
   try {
     // This will be implemented in the AppBlockingModule
@@ -98,10 +188,10 @@ export const getForegroundApp = async () => {
   }
 };
 
-// Helper function to get app icon URL from base64
+// Icons are cached natively and served as file:// URIs, loaded lazily by <Image>
 export const getAppIconSource = (app) => {
-  if (app.icon) {
-    return { uri: `data:image/png;base64,${app.icon}` };
+  if (app.iconUri) {
+    return { uri: app.iconUri };
   }
   return null;
 };
\ No newline at end of file
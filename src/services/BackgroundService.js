@@ -1,24 +1,81 @@
-import { NativeModules, Platform } from 'react-native';
-import BackgroundTimer from 'react-native-background-timer';
+import { NativeEventEmitter, Platform } from 'react-native';
+import AppBlockingModule from '../specs/NativeAppBlockingModule';
 import { getRestrictedApps } from './StorageService';
-import { showBlockingOverlay } from './OverlayService';
-import moment from 'moment';
 
-const { AppBlockingModule } = NativeModules;
+const EVENT_FOREGROUND_CHANGED = 'AppBlockingForegroundChanged';
+const EVENT_APP_BLOCKED = 'AppBlockingAppBlocked';
+const monitorEmitter = Platform.OS === 'android' && AppBlockingModule
+  ? new NativeEventEmitter(AppBlockingModule)
+  : null;
 
 let isMonitoring = false;
 let currentBlockedApp = null;
+let blockedSubscription = null;
+
+// What the native store holds as of lastSyncedState.version: package -> serialized restriction.
+// Null until the first full sync of this JS session.
+let lastSyncedState = null;
+
+const serializeRestrictions = (restrictions) => {
+  const serialized = {};
+  Object.keys(restrictions).forEach((packageName) => {
+    serialized[packageName] = JSON.stringify(restrictions[packageName]);
+  });
+  return serialized;
+};
+
+// Sends only what changed since the last sync; falls back to a full sync on the first
+// call or when the native version moved underneath us (e.g. an uninstalled app was pruned)
+const syncRestrictionDelta = async (restrictedApps, serialized) => {
+  const changed = {};
+  Object.keys(serialized).forEach((packageName) => {
+    if (lastSyncedState.restrictions[packageName] !== serialized[packageName]) {
+      changed[packageName] = restrictedApps[packageName];
+    }
+  });
+  const removed = Object.keys(lastSyncedState.restrictions)
+    .filter((packageName) => !(packageName in serialized));
+
+  let { version } = lastSyncedState;
+  if (removed.length > 0) {
+    version = await AppBlockingModule.removeRestrictedApps(removed, version);
+  }
+  if (Object.keys(changed).length > 0) {
+    version = await AppBlockingModule.addRestrictedApps(changed, version);
+  }
+  lastSyncedState = { version, restrictions: serialized };
+  console.log(`Synced restriction delta: ${Object.keys(changed).length} changed, ${removed.length} removed (generation ${version})`);
+};
 
 export const syncRestrictedApps = async () => {
   try {
     const restrictedApps = await getRestrictedApps();
     const packages = Object.keys(restrictedApps);
 
-    if (Platform.OS === 'android' && AppBlockingModule?.updateRestrictedApps) {
-      await AppBlockingModule.updateRestrictedApps(packages);
-      console.log(`Synced ${packages.length} restricted apps to native service`);
+    if (Platform.OS === 'android' && AppBlockingModule?.addRestrictedApps && lastSyncedState) {
+      const serialized = serializeRestrictions(restrictedApps);
+      try {
+        await syncRestrictionDelta(restrictedApps, serialized);
+        return;
+      } catch (error) {
+        if (error?.code !== 'STALE_VERSION') {
+          throw error;
+        }
+        lastSyncedState = null;
+      }
+    }
+
+    if (Platform.OS === 'android' && AppBlockingModule?.updateRestrictions) {
+      // Full rules (days + time window) are compiled and evaluated natively
+      const generation = await AppBlockingModule.updateRestrictions(restrictedApps);
+      lastSyncedState = { version: generation, restrictions: serializeRestrictions(restrictedApps) };
+      console.log(`Synced ${packages.length} restrictions to native service (generation ${generation})`);
+    } else if (Platform.OS === 'android' && AppBlockingModule?.updateRestrictedApps) {
+      const generation = await AppBlockingModule.updateRestrictedApps(packages);
+      console.log(`Synced ${packages.length} restricted apps to native service (generation ${generation})`);
     }
   } catch (error) {
+    lastSyncedState = null;
     console.error('Error syncing restricted apps:', error);
   }
 };
@@ -40,14 +97,8 @@ export const startAppMonitoring = async () => {
     isMonitoring = true;
     console.log('Starting app monitoring service...');
 
-    // JavaScript-based monitoring as fallback
-    BackgroundTimer.runBackgroundTimer(async () => {
-      try {
-        await checkAndBlockApps();
-      } catch (error) {
-        console.error('Error in background monitoring:', error);
-      }
-    }, 3000); // Check every 3 seconds
+    // Detection and blocking run natively; JS only wakes when the service pushes an event
+    blockedSubscription = subscribeToMonitorEvents({ onAppBlocked: handleAppBlocked });
 
   } catch (error) {
     console.error('Error starting app monitoring:', error);
@@ -65,7 +116,10 @@ export const stopAppMonitoring = () => {
     }
     
     isMonitoring = false;
-    BackgroundTimer.stopBackgroundTimer();
+    if (blockedSubscription) {
+      blockedSubscription.remove();
+      blockedSubscription = null;
+    }
     console.log('App monitoring service stopped');
     
     // Hide any active overlay
@@ -77,64 +131,190 @@ export const stopAppMonitoring = () => {
   }
 };
 
-const checkAndBlockApps = async () => {
+// Subscribes to events pushed by the native service:
+//   onForegroundChanged({ packageName, timestamp }) - coalesced, only on an actual change
+//   onAppBlocked({ packageName, rule: 'schedule' | 'quota', timestamp })
+// Returns an object with remove().
+export const subscribeToMonitorEvents = ({ onForegroundChanged, onAppBlocked } = {}) => {
+  if (!monitorEmitter) {
+    return { remove: () => {} };
+  }
+  const subscriptions = [];
+  if (onForegroundChanged) {
+    subscriptions.push(monitorEmitter.addListener(EVENT_FOREGROUND_CHANGED, onForegroundChanged));
+  }
+  if (onAppBlocked) {
+    subscriptions.push(monitorEmitter.addListener(EVENT_APP_BLOCKED, onAppBlocked));
+  }
+  return {
+    remove: () => subscriptions.forEach((subscription) => subscription.remove()),
+  };
+};
+
+// The native side already showed the block screen (overlay or BlockerActivity); only track it here
+const handleAppBlocked = ({ packageName }) => {
+  currentBlockedApp = packageName;
+};
+
+export const isMonitoringActive = () => {
+  return isMonitoring;
+};
+
+// Synchronous (JSI): whether the package has a rule or a daily quota in the native store
+export const isRestrictedNative = (packageName) => {
+  if (Platform.OS !== 'android' || !AppBlockingModule?.isRestricted) {
+    return false;
+  }
+  return AppBlockingModule.isRestricted(packageName);
+};
+
+// Synchronous (JSI): number of rules in the native store
+export const getRestrictedCount = () => {
+  if (Platform.OS !== 'android' || !AppBlockingModule?.getRestrictedCount) {
+    return 0;
+  }
+  return AppBlockingModule.getRestrictedCount();
+};
+
+// Daily foreground budgets in minutes per package, e.g. { 'com.instagram.android': 30 }.
+// Usage is accounted and enforced natively; this replaces the previous set.
+export const setDailyQuotas = async (quotaMinutes) => {
+  if (Platform.OS !== 'android' || !AppBlockingModule?.setDailyQuotas) {
+    return null;
+  }
+  const generation = await AppBlockingModule.setDailyQuotas(quotaMinutes);
+  // Quotas share the restriction generation; keep restriction deltas valid across the bump
+  if (lastSyncedState && generation === lastSyncedState.version + 1) {
+    lastSyncedState = { ...lastSyncedState, version: generation };
+  }
+  return generation;
+};
+
+// Foreground milliseconds per package for the current day
+export const getTodayUsage = async () => {
+  if (Platform.OS !== 'android' || !AppBlockingModule?.getTodayUsage) {
+    return {};
+  }
   try {
-    const restrictedApps = await getRestrictedApps();
-    const currentTime = moment().format('HH:mm');
-    const currentDay = moment().format('dddd').toLowerCase();
+    return await AppBlockingModule.getTodayUsage();
+  } catch (error) {
+    console.error('Error getting today usage:', error);
+    return {};
+  }
+};
 
-    // Get mock foreground app (in real implementation, this would come from native module)
-    const mockForegroundApp = await getMockForegroundApp();
-    
-    if (mockForegroundApp && restrictedApps[mockForegroundApp.packageName]) {
-      const restriction = restrictedApps[mockForegroundApp.packageName];
-      
-      if (shouldBlockApp(restriction, currentTime, currentDay)) {
-        console.log(`Blocking app: ${mockForegroundApp.name}`);
-        await showBlockingOverlay(mockForegroundApp.name, restriction);
-        currentBlockedApp = mockForegroundApp.packageName;
+// Block counts aggregated natively: { days: [dayStartMs], counts: { pkg: [perDay] }, total }
+export const getBlockStats = async (fromMs, toMs = Date.now()) => {
+  if (Platform.OS !== 'android' || !AppBlockingModule?.getBlockStats) {
+    return { days: [], counts: {}, total: 0 };
+  }
+  try {
+    return await AppBlockingModule.getBlockStats(fromMs, toMs);
+  } catch (error) {
+    console.error('Error getting block stats:', error);
+    return { days: [], counts: {}, total: 0 };
+  }
+};
+
+// Must match AppListeModule.SEPARATOR
+const COLUMN_SEPARATOR = '\u001f';
+
+const decodeBase64 = (encoded) => {
+  const binary = atob(encoded);
+  const bytes = new Uint8Array(binary.length);
+  for (let i = 0; i < binary.length; i++) {
+    bytes[i] = binary.charCodeAt(i);
+  }
+  return bytes.buffer;
+};
+
+// Foreground ms per app per hour or day:
+// { resolution, bucketStarts: Float64Array, apps: [{ packageName, totalMs, values: Int32Array }] },
+// apps most used first. values are views into one buffer, one entry per bucket.
+export const getUsageHistory = async (fromMs, toMs = Date.now(), resolution = 'day') => {
+  const empty = { resolution, bucketStarts: new Float64Array(0), apps: [] };
+  if (Platform.OS !== 'android' || !AppBlockingModule?.getUsageHistory) {
+    return empty;
+  }
+  try {
+    const columns = await AppBlockingModule.getUsageHistory(fromMs, toMs, resolution);
+    const bucketStarts = new Float64Array(decodeBase64(columns.bucketStarts));
+    const values = new Int32Array(decodeBase64(columns.values));
+    const packageNames = columns.count > 0 ? columns.packageNames.split(COLUMN_SEPARATOR) : [];
+    const apps = packageNames.map((packageName, i) => {
+      const row = values.subarray(i * columns.buckets, (i + 1) * columns.buckets);
+      let totalMs = 0;
+      for (let b = 0; b < row.length; b++) {
+        totalMs += row[b];
       }
-    }
+      return { packageName, totalMs, values: row };
+    });
+    return { resolution: columns.resolution, bucketStarts, apps };
   } catch (error) {
-    console.error('Error checking and blocking apps:', error);
+    console.error('Error getting usage history:', error);
+    return empty;
   }
 };
 
-const shouldBlockApp = (restriction, currentTime, currentDay) => {
-  if (!restriction.enabled) {
-    return false;
+// Service cost counters and histograms (same data as `adb shell dumpsys activity service`)
+export const getServiceMetrics = async () => {
+  if (Platform.OS !== 'android' || !AppBlockingModule?.getServiceMetrics) {
+    return null;
+  }
+  try {
+    return await AppBlockingModule.getServiceMetrics();
+  } catch (error) {
+    console.error('Error getting service metrics:', error);
+    return null;
   }
+};
 
-  // Check if restriction is active for current day
-  if (!restriction.days[currentDay]) {
-    return false;
+// Native flight recorder: 0 = off, 1 = blocks and foreground changes, 2 = every tick
+export const setTraceLevel = async (level) => {
+  if (Platform.OS !== 'android' || !AppBlockingModule?.setTraceLevel) {
+    return null;
   }
+  return AppBlockingModule.setTraceLevel(level);
+};
 
-  // Check if current time is within restriction period
-  return currentTime >= restriction.startTime && currentTime <= restriction.endTime;
-};
-
-// Mock function to simulate detecting foreground app
-const getMockForegroundApp = async () => {
-  // In real implementation, this would come from native Android module
-  // For demo purposes, we'll randomly return a restricted app
-  const restrictedApps = await getRestrictedApps();
-  const restrictedPackages = Object.keys(restrictedApps);
-  
-  if (restrictedPackages.length > 0) {
-    // Simulate detecting a restricted app 30% of the time for demo
-    if (Math.random() < 0.3) {
-      const randomPackage = restrictedPackages[Math.floor(Math.random() * restrictedPackages.length)];
-      return {
-        packageName: randomPackage,
-        name: randomPackage // Extract app name from package
-      };
-    }
+// Recent monitoring history as text, for attaching to "app was not blocked" reports
+export const getTraceDump = async () => {
+  if (Platform.OS !== 'android' || !AppBlockingModule?.getTraceDump) {
+    return '';
+  }
+  try {
+    return await AppBlockingModule.getTraceDump();
+  } catch (error) {
+    console.error('Error getting trace dump:', error);
+    return '';
   }
-  
-  return null;
 };
 
-export const isMonitoringActive = () => {
-  return isMonitoring;
-};
\ No newline at end of file
+// Foreground detection engine: 'auto' uses the accessibility service when it is enabled
+// (blocks on the window change, no polling) and UsageStats polling otherwise
+export const setDetectorMode = async (mode) => {
+  if (Platform.OS !== 'android' || !AppBlockingModule?.setDetectorMode) {
+    return null;
+  }
+  return AppBlockingModule.setDetectorMode(mode);
+};
+
+// { mode, engine, accessibilityEnabled, accessibilityConnected }
+export const getDetectorStatus = async () => {
+  if (Platform.OS !== 'android' || !AppBlockingModule?.getDetectorStatus) {
+    return null;
+  }
+  try {
+    return await AppBlockingModule.getDetectorStatus();
+  } catch (error) {
+    console.error('Error getting detector status:', error);
+    return null;
+  }
+};
+
+export const openAccessibilitySettings = async () => {
+  if (Platform.OS !== 'android' || !AppBlockingModule?.openAccessibilitySettings) {
+    return false;
+  }
+  return AppBlockingModule.openAccessibilitySettings();
+};
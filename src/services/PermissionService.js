@@ -1,7 +1,5 @@
-import { Alert, Linking, NativeModules, PermissionsAndroid, Platform } from 'react-native';
-
-// Use our native modules for overlay and usage stats checks
-const { OverlayPermissionModule } = NativeModules;
+import { Alert, Linking, PermissionsAndroid, Platform } from 'react-native';
+import OverlayPermissionModule from '../specs/NativeOverlayPermissionModule';
 
 export const checkPermissions = async () => {
     if (Platform.OS !== 'android') {
@@ -39,6 +37,10 @@ const checkUsageAccessPermission = async () => {
     if (Platform.OS !== 'android') return true;
 
     try {
+        // Synchronous over JSI; no bridge round trip on every screen focus
+        if (OverlayPermissionModule?.hasUsageStatsAccess) {
+            return OverlayPermissionModule.hasUsageStatsAccess();
+        }
         if (OverlayPermissionModule?.checkUsageStatsPermission) {
             const hasUsageAccess = await OverlayPermissionModule.checkUsageStatsPermission();
             return !!hasUsageAccess;
@@ -55,6 +57,9 @@ const checkOverlayPermission = async () => {
     if (Platform.OS !== 'android') return true;
 
     try {
+        if (OverlayPermissionModule?.canDrawOverlays) {
+            return OverlayPermissionModule.canDrawOverlays();
+        }
         if (Platform.Version >= 23 && OverlayPermissionModule?.checkOverlayPermission) {
             const canDrawOverlays = await OverlayPermissionModule.checkOverlayPermission();
             return !!canDrawOverlays;
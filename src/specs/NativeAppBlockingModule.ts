@@ -0,0 +1,50 @@
+import type { TurboModule } from 'react-native';
+import { TurboModuleRegistry } from 'react-native';
+
+// Packed columns, decoded in BackgroundService.getUsageHistory
+export type UsageHistoryColumns = {
+  resolution: string;
+  count: number;
+  buckets: number;
+  packageNames: string;
+  bucketStarts: string;
+  values: string;
+};
+
+export interface Spec extends TurboModule {
+  // Required by NativeEventEmitter (AppBlockingForegroundChanged, AppBlockingAppBlocked)
+  addListener(eventName: string): void;
+  removeListeners(count: number): void;
+
+  startAppBlockingService(): void;
+  stopAppBlockingService(): void;
+  checkUsageStatsPermission(): Promise<boolean>;
+
+  updateRestrictedApps(packageNames: Array<string>): Promise<number>;
+  // Restriction keys are package names, prefixes ending in '*' ("com.facebook.*") or
+  // categories ("category:game", also audio, video, image, social, news, maps, productivity, accessibility)
+  updateRestrictions(restrictions: Object): Promise<number>;
+  addRestrictedApps(restrictions: Object, baseVersion: number): Promise<number>;
+  removeRestrictedApps(packageNames: Array<string>, baseVersion: number): Promise<number>;
+  setDailyQuotas(quotaMinutes: Object): Promise<number>;
+  getTodayUsage(): Promise<Object>;
+  getRestrictionGeneration(): Promise<{ published: number; applied: number }>;
+
+  // Synchronous, answered from the in-memory restriction snapshot
+  isRestricted(packageName: string): boolean;
+  getRestrictedCount(): number;
+
+  getBlockStats(fromMs: number, toMs: number): Promise<Object>;
+  // resolution is 'hour' or 'day'
+  getUsageHistory(fromMs: number, toMs: number, resolution: string): Promise<UsageHistoryColumns>;
+  getServiceMetrics(): Promise<Object>;
+  exportUsageTrace(fromMs: number, toMs: number): Promise<{ tracePath: string; rulesPath: string; events: number }>;
+  setTraceLevel(level: number): Promise<number>;
+  getTraceDump(): Promise<string>;
+
+  setDetectorMode(mode: string): Promise<string>;
+  getDetectorStatus(): Promise<Object>;
+  openAccessibilitySettings(): Promise<boolean>;
+}
+
+export default TurboModuleRegistry.get<Spec>('AppBlockingModule');
@@ -0,0 +1,31 @@
+import type { TurboModule } from 'react-native';
+import { TurboModuleRegistry } from 'react-native';
+
+// App lists cross as columns: one separator-joined string per field plus a '0'/'1'
+// launchable string, instead of a map per app. Decode with decodeAppColumns in AppService.
+export type AppColumns = {
+  count: number;
+  packageNames: string;
+  names: string;
+  iconUris: string;
+  launchable: string;
+};
+
+export interface Spec extends TurboModule {
+  // Required by NativeEventEmitter (AppListePage)
+  addListener(eventName: string): void;
+  removeListeners(count: number): void;
+
+  getInstalledApps(): Promise<AppColumns>;
+  getNonSystemApps(): Promise<AppColumns>;
+  streamApps(requestId: string, launchableOnly: boolean, pageSize: number, iconSizePx: number): void;
+  getAppsChangedSince(token: number): Promise<{
+    token: number;
+    reset: boolean;
+    apps: AppColumns;
+    removed: string;
+  }>;
+  getCatalogPrefetchTiming(): Promise<Object>;
+}
+
+export default TurboModuleRegistry.get<Spec>('AppListeModule');
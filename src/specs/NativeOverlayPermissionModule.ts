@@ -0,0 +1,14 @@
+import type { TurboModule } from 'react-native';
+import { TurboModuleRegistry } from 'react-native';
+
+export interface Spec extends TurboModule {
+  checkOverlayPermission(): Promise<boolean>;
+  requestOverlayPermission(): Promise<boolean>;
+  checkUsageStatsPermission(): Promise<boolean>;
+
+  // Synchronous permission states, for checks that run on every screen focus
+  canDrawOverlays(): boolean;
+  hasUsageStatsAccess(): boolean;
+}
+
+export default TurboModuleRegistry.get<Spec>('OverlayPermissionModule');